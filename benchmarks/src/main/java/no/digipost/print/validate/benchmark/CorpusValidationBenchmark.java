@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate.benchmark;
+
+import no.digipost.print.validate.PdfValidationResult;
+import no.digipost.print.validate.PdfValidationSettings;
+import no.digipost.print.validate.PdfValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates each document of the test corpus with each {@link ValidationSettingsProfile}, from
+ * a byte array, a direct {@link ByteBuffer} and a file.
+ * <p>
+ * Narrow down the run with e.g. {@code -p document=a4-21pages.pdf -p profile=CHECK_ALL}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CorpusValidationBenchmark {
+
+    @Param({
+            "21-pages-and-bogus-fonts.pdf",
+            "a4-21pages.pdf",
+            "a4-free-barcode-area.pdf",
+            "a4-full-page.pdf",
+            "a4-landscape-free-barcode-area.pdf",
+            "a4-landscape-left-margin-14_5mm.pdf",
+            "a4-landscape-left-margin-15_1mm.pdf",
+            "a4-landscape.pdf",
+            "a4-landscape_v16.pdf",
+            "a4-landscape_v17.pdf",
+            "a4-left-margin-14_5mm.pdf",
+            "a4-left-margin-15_1mm.pdf",
+            "a4-left-margin-20mm_v16.pdf",
+            "a4-left-margin-20mm_v17.pdf",
+            "a4-pdf-with-10mm-bleed.pdf",
+            "a5-landscape-left-margin-15mm.pdf",
+            "a5-left-margin-15mm.pdf",
+            "corrupt.pdf",
+            "corrupt_no_pages.pdf",
+            "encrypted-with-password.pdf",
+            "far-from-a4-free-barcode-area.pdf",
+            "letter-landscape-left-margin-20mm.pdf",
+            "letter-left-margin-20mm.pdf",
+            "nearly-a4-free-barcode-area.pdf",
+            "nearly-a4-rotated_free-barcode-area.pdf",
+            "pdf-version-16.pdf",
+            "pdf-version-17.pdf",
+            "uten-embeddede-fonter.pdf"})
+    public String document;
+
+    @Param
+    public ValidationSettingsProfile profile;
+
+    private final PdfValidator validator = new PdfValidator();
+    private PdfValidationSettings settings;
+    private byte[] pdf;
+    private ByteBuffer directPdf;
+    private Path pdfFile;
+
+    @Setup
+    public void loadDocument() {
+        settings = profile.settings;
+        pdf = Corpus.read(document);
+        directPdf = ByteBuffer.allocateDirect(pdf.length);
+        directPdf.put(pdf).flip();
+        pdfFile = Corpus.writeToTempFile(document, pdf);
+    }
+
+    @Benchmark
+    public PdfValidationResult validateBytes() {
+        return validator.validate(pdf, settings);
+    }
+
+    @Benchmark
+    public PdfValidationResult validateDirectByteBuffer() {
+        return validator.validate(directPdf, settings);
+    }
+
+    @Benchmark
+    public PdfValidationResult validatePath() throws IOException {
+        return validator.validate(pdfFile, settings);
+    }
+
+}
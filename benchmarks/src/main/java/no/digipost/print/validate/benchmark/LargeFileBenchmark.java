@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate.benchmark;
+
+import no.digipost.print.validate.PdfValidationResult;
+import no.digipost.print.validate.PdfValidationSettings;
+import no.digipost.print.validate.PdfValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates large files resembling scanned letters, comparing {@link PdfValidator#validate(Path, PdfValidationSettings)},
+ * which memory-maps the file, with reading the whole file onto the heap before validating it, which is what
+ * {@code validate(Path, ...)} used to do. Compare the {@code gc.alloc.rate.norm} of the two benchmarks to see the
+ * difference in heap usage per validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LargeFileBenchmark {
+
+    @Param({"50", "200"})
+    public int sizeInMegabytes;
+
+    @Param({"20"})
+    public int pages;
+
+    @Param({"CHECK_ALL", "MARGIN_ONLY"})
+    public ValidationSettingsProfile profile;
+
+    private final PdfValidator validator = new PdfValidator();
+    private PdfValidationSettings settings;
+    private Path pdfFile;
+
+    @Setup
+    public void generateFile() throws IOException {
+        settings = profile.settings;
+        pdfFile = Files.createTempFile("printability-benchmark-", "-" + sizeInMegabytes + "mb.pdf");
+        SyntheticPdfGenerator.generateScanned(pdfFile, pages, sizeInMegabytes * 1024L * 1024L);
+    }
+
+    @TearDown
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(pdfFile);
+    }
+
+    @Benchmark
+    public PdfValidationResult memoryMappedFile() throws IOException {
+        return validator.validate(pdfFile, settings);
+    }
+
+    @Benchmark
+    public PdfValidationResult wholeFileOnHeap() throws IOException {
+        return validator.validate(Files.readAllBytes(pdfFile), settings);
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate.benchmark;
+
+import no.digipost.print.validate.FontVerdictCache;
+import no.digipost.print.validate.PdfValidationResult;
+import no.digipost.print.validate.PdfValidationSettings;
+import no.digipost.print.validate.PdfValidator;
+import no.digipost.print.validate.ValidationResultCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates generated documents of increasing size, to show how the cost of the
+ * validation scales with the number of pages and fonts.
+ * <p>
+ * The page count limit is not validated, as it would let the documents above
+ * {@value PdfValidationSettings#STANDARD_MAX_PAGES_FOR_AUTOMATED_PRINT} pages
+ * fail without inspecting all of their pages.
+ * <p>
+ * The documents are validated both sequentially, and with the pages checked concurrently
+ * on the common {@link ForkJoinPool}, and sequentially with a {@link FontVerdictCache} shared by all the
+ * validations. Validating with a {@link ValidationResultCache} shows the cost of a document sent again,
+ * which is only hashed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageScalingBenchmark {
+
+    @Param({"1", "20", "200"})
+    public int pages;
+
+    @Param({"1", "12"})
+    public int fontsPerPage;
+
+    @Param({"true", "false"})
+    public boolean sharedResources;
+
+    @Param({"CHECK_ALL", "MARGIN_ONLY", "FONTS_ONLY"})
+    public ValidationSettingsProfile profile;
+
+    private final PdfValidator validator = new PdfValidator();
+    private final PdfValidator concurrentValidator = new PdfValidator(ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+    private final PdfValidator cachingValidator = new PdfValidator(new FontVerdictCache());
+    private final PdfValidator resultCachingValidator = new PdfValidator().withResultCache(new ValidationResultCache(Duration.ofHours(1)));
+    private PdfValidationSettings settings;
+    private byte[] pdf;
+
+    @Setup
+    public void generateDocument() {
+        PdfValidationSettings profileSettings = profile.settings;
+        settings = new PdfValidationSettings(
+                profileSettings.validateLeftMargin, profileSettings.validateFonts, false, profileSettings.validatePDFversion);
+        pdf = SyntheticPdfGenerator.generate(pages, fontsPerPage, sharedResources, 3);
+    }
+
+    @Benchmark
+    public PdfValidationResult validateBytes() {
+        return validator.validate(pdf, settings);
+    }
+
+    @Benchmark
+    public PdfValidationResult validateBytesConcurrently() {
+        return concurrentValidator.validate(pdf, settings);
+    }
+
+    @Benchmark
+    public PdfValidationResult validateBytesWithFontVerdictCache() {
+        return cachingValidator.validate(pdf, settings);
+    }
+
+    @Benchmark
+    public PdfValidationResult validateBytesWithResultCache() {
+        return resultCachingValidator.validate(pdf, settings);
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts.FontName;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates printable A4 documents of arbitrary size, to see how the cost of validation
+ * scales with the number of pages and fonts.
+ */
+final class SyntheticPdfGenerator {
+
+    private static final float MM_TO_POINTS = 72 / 25.4f;
+
+    // Symbol and ZapfDingbats can not show the latin text written on each page
+    private static final FontName[] TEXT_FONTS = {
+            FontName.HELVETICA, FontName.HELVETICA_BOLD, FontName.HELVETICA_OBLIQUE, FontName.HELVETICA_BOLD_OBLIQUE,
+            FontName.TIMES_ROMAN, FontName.TIMES_BOLD, FontName.TIMES_ITALIC, FontName.TIMES_BOLD_ITALIC,
+            FontName.COURIER, FontName.COURIER_BOLD, FontName.COURIER_OBLIQUE, FontName.COURIER_BOLD_OBLIQUE };
+
+    static final int MAX_FONTS_PER_PAGE = TEXT_FONTS.length;
+
+    private static final String LINE = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor.";
+
+    /**
+     * @param pages the number of A4 pages to generate
+     * @param fontsPerPage the number of fonts used on each page, at most {@link #MAX_FONTS_PER_PAGE}
+     * @param sharedResources {@code true} to let all pages share one Resources dictionary and the same
+     *                        font objects, as generated from templates, or {@code false} to give each
+     *                        page its own font dictionaries
+     * @param linesPerFont how many lines of text to write with each font on each page
+     */
+    static byte[] generate(int pages, int fontsPerPage, boolean sharedResources, int linesPerFont) {
+        if (fontsPerPage < 1 || fontsPerPage > MAX_FONTS_PER_PAGE) {
+            throw new IllegalArgumentException("fontsPerPage must be between 1 and " + MAX_FONTS_PER_PAGE + ", was " + fontsPerPage);
+        }
+        try (PDDocument document = new PDDocument()) {
+            PDResources templateResources = new PDResources();
+            List<PDFont> templateFonts = fonts(fontsPerPage);
+            for (int i = 0; i < pages; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                List<PDFont> pageFonts = templateFonts;
+                if (sharedResources) {
+                    page.setResources(templateResources);
+                } else {
+                    pageFonts = fonts(fontsPerPage);
+                }
+                document.addPage(page);
+                writeText(document, page, pageFonts, linesPerFont);
+            }
+            ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+            document.save(pdf);
+            return pdf.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a document resembling a scanned letter to the given file: each page is covered by
+     * an image of random noise, which is not compressible, so the file becomes roughly as large
+     * as requested.
+     *
+     * @param pages the number of A4 pages to generate
+     * @param approximateSizeInBytes the size of the file to generate
+     */
+    static void generateScanned(Path target, int pages, long approximateSizeInBytes) {
+        int bytesPerPixel = 3;
+        int width = 1240;
+        int height = (int) Math.max(1, approximateSizeInBytes / pages / bytesPerPixel / width);
+        Random random = new Random(42);
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                BufferedImage noise = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        noise.setRGB(x, y, random.nextInt(0xFFFFFF));
+                    }
+                }
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                PDImageXObject scan = LosslessFactory.createFromImage(document, noise);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    float left = 20 * MM_TO_POINTS;
+                    content.drawImage(scan, left, 0, page.getMediaBox().getWidth() - left, page.getMediaBox().getHeight());
+                }
+            }
+            document.save(target.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<PDFont> fonts(int count) {
+        List<PDFont> fonts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            fonts.add(new PDType1Font(TEXT_FONTS[i]));
+        }
+        return fonts;
+    }
+
+    private static void writeText(PDDocument document, PDPage page, List<PDFont> fonts, int linesPerFont) throws IOException {
+        float fontSize = 8;
+        float left = 25 * MM_TO_POINTS;
+        float top = page.getMediaBox().getHeight() - 20 * MM_TO_POINTS;
+        float bottom = 20 * MM_TO_POINTS;
+        try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+            float y = top;
+            for (PDFont font : fonts) {
+                for (int line = 0; line < linesPerFont; line++) {
+                    if (y < bottom) {
+                        y = top;
+                    }
+                    content.beginText();
+                    content.setFont(font, fontSize);
+                    content.newLineAtOffset(left, y);
+                    content.showText(LINE);
+                    content.endText();
+                    y -= fontSize * 1.2f;
+                }
+            }
+        }
+    }
+
+    private SyntheticPdfGenerator() {
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate.benchmark;
+
+import no.digipost.print.validate.PdfValidationSettings;
+
+/**
+ * The combinations of {@link PdfValidationSettings} each benchmark is run with.
+ * Enables measuring each check in isolation, in addition to all checks at once.
+ */
+public enum ValidationSettingsProfile {
+
+    CHECK_ALL(PdfValidationSettings.CHECK_ALL),
+    CHECK_ALL_FAIL_FAST(PdfValidationSettings.CHECK_ALL.withFailFast(true)),
+    MARGIN_ONLY(new PdfValidationSettings(true, false, false, false)),
+    FONTS_ONLY(new PdfValidationSettings(false, true, false, false)),
+    PAGE_COUNT_ONLY(new PdfValidationSettings(false, false, true, false)),
+    PDF_VERSION_ONLY(new PdfValidationSettings(false, false, false, true)),
+    NONE(new PdfValidationSettings(false, false, false, false));
+
+    public final PdfValidationSettings settings;
+
+    ValidationSettingsProfile(PdfValidationSettings settings) {
+        this.settings = settings;
+    }
+}
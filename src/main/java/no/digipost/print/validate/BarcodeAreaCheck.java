@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.BarcodeAreaContent;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static no.digipost.print.validate.PdfValidationError.INSUFFICIENT_MARGIN_FOR_PRINT;
+import static no.digipost.print.validate.PdfValidationError.UNABLE_TO_VERIFY_SUITABLE_MARGIN_FOR_PRINT;
+
+/**
+ * Verifies that there is no text, or other {@link BarcodeAreaContent content} as configured, in the area
+ * of the left margin where the barcode is printed. Pages whose content can not be processed may be
+ * verified by rendering the barcode area with a {@link BarcodeAreaRasterizer}.
+ */
+final class BarcodeAreaCheck implements PageCheck {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BarcodeAreaCheck.class);
+
+    private static final int NO_PAGE = Integer.MAX_VALUE;
+
+    private final PageGeometry geometry;
+    private final BarcodeAreaContentDetector contentDetector;
+    private final BarcodeAreaRasterizer rasterizer;
+    private int firstPageWithContentInBarcodeArea = NO_PAGE;
+    private int firstPageWithUnverifiableMargin = NO_PAGE;
+
+    /**
+     * @param content the kinds of content which must not be in the barcode area
+     * @param rasterFallback {@code true} to render the barcode area of the pages whose content can not be processed
+     * @param marginVerdictCache the outcomes of pages of other documents, or {@code null}
+     */
+    BarcodeAreaCheck(PageGeometry geometry, BarcodeAreaContent content, boolean rasterFallback, MarginVerdictCache marginVerdictCache,
+                     ValidationContext context) {
+        this.geometry = geometry;
+        this.contentDetector = new BarcodeAreaContentDetector(context, content, marginVerdictCache);
+        this.rasterizer = rasterFallback ? new BarcodeAreaRasterizer(context, content) : null;
+    }
+
+    @Override
+    public ValidationMetrics.Phase phase() {
+        return ValidationMetrics.Phase.MARGIN;
+    }
+
+    @Override
+    public void startDocument(PDDocument document) {
+        if (rasterizer != null) {
+            rasterizer.setDocument(document);
+        }
+    }
+
+    @Override
+    public void check(int pageIndex, PDPage page, PDRectangle cropBox) {
+        Rectangle2D barcodeArea = geometry.barcodeArea(cropBox);
+        try {
+            if (contentDetector.hasContentInArea(page, cropBox, barcodeArea)) {
+                firstPageWithContentInBarcodeArea = pageIndex;
+            }
+        } catch (CancellationException cancelled) {
+            throw cancelled;
+        } catch (Exception npe) {
+            if (rasterizer != null && verifiedByRendering(pageIndex, barcodeArea, npe)) {
+                return;
+            }
+            firstPageWithUnverifiableMargin = Math.min(firstPageWithUnverifiableMargin, pageIndex);
+            LOG.debug("Unable to validate the margin on one of the pages.", npe);
+        }
+    }
+
+    /**
+     * @return {@code true} if the barcode area of the page could be rendered, which gives the outcome for the page
+     */
+    private boolean verifiedByRendering(int pageIndex, Rectangle2D barcodeArea, Exception processingFailure) {
+        try {
+            if (rasterizer.hasContentInArea(pageIndex, barcodeArea)) {
+                firstPageWithContentInBarcodeArea = pageIndex;
+            }
+            LOG.debug("Validated the margin on page {} by rendering the barcode area, as the content of the page could not be processed.",
+                    pageIndex + 1, processingFailure);
+            return true;
+        } catch (CancellationException cancelled) {
+            throw cancelled;
+        } catch (Exception renderingFailure) {
+            processingFailure.addSuppressed(renderingFailure);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isConclusive() {
+        return firstPageWithContentInBarcodeArea != NO_PAGE;
+    }
+
+    @Override
+    public boolean hasErrors() {
+        return firstPageWithContentInBarcodeArea != NO_PAGE || firstPageWithUnverifiableMargin != NO_PAGE;
+    }
+
+    @Override
+    public void merge(PageCheck followingPages) {
+        BarcodeAreaCheck following = (BarcodeAreaCheck) followingPages;
+        firstPageWithContentInBarcodeArea = Math.min(firstPageWithContentInBarcodeArea, following.firstPageWithContentInBarcodeArea);
+        firstPageWithUnverifiableMargin = Math.min(firstPageWithUnverifiableMargin, following.firstPageWithUnverifiableMargin);
+    }
+
+    @Override
+    public void addErrors(List<PdfValidationError> errors) {
+        // pages after the first page with content in the barcode area would never have been checked sequentially
+        if (firstPageWithUnverifiableMargin < firstPageWithContentInBarcodeArea) {
+            errors.add(UNABLE_TO_VERIFY_SUITABLE_MARGIN_FOR_PRINT);
+        }
+        if (isConclusive()) {
+            errors.add(INSUFFICIENT_MARGIN_FOR_PRINT);
+        }
+    }
+}
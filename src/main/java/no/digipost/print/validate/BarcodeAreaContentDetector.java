@@ -0,0 +1,698 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.MarginVerdictCache.ContentHash;
+import no.digipost.print.validate.PdfValidationSettings.BarcodeAreaContent;
+import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.contentstream.operator.DrawObject;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageTree;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDSimpleFont;
+import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceCMYK;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDTransparencyGroup;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
+import org.apache.pdfbox.pdmodel.graphics.state.PDTextState;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * Detects if a page shows any text, images or vector graphics within an area of the page, as configured
+ * by the {@link BarcodeAreaContent}, in one pass over the content stream of the page, without extracting
+ * the text or decoding the images. The content stream is processed only until the first content in the area
+ * is shown, and only the operators needed for the kinds of content to detect are processed.
+ * <p>
+ * A glyph is considered within the area by the same rules as
+ * {@link org.apache.pdfbox.text.PDFTextStripperByArea}, which this replaces: the origin of
+ * the glyph must be within the area, given in the coordinates of the displayed (rotated) page
+ * with the origin in the upper left corner of the crop box. Glyphs which can not be mapped to
+ * Unicode, or which are mapped to whitespace only, are not considered visible text.
+ * An image, or a filled or stroked path, is considered within the area if its bounding box intersects the area.
+ * Stroked paths are widened by the line width, and paths painted in white are not considered, as they do not
+ * disturb the barcode. A shading is considered to paint its clipping region. Clipping does otherwise not
+ * limit the content, which errs on the side of finding content in the area.
+ * <p>
+ * The operators processed are reported to the {@link ValidationContext}, which stops the processing
+ * if the validation exceeds its budget, or is cancelled.
+ * <p>
+ * The outcome is remembered for each page content, identified by the content stream and resource objects
+ * of the page, its crop box and rotation, and the area. A page with the same content as a page already
+ * inspected, as is common for documents generated from templates, is not processed again. Likewise, the
+ * outcome of each form XObject shown outside a text object is remembered by the form, the graphics state
+ * it is shown with, and the resources it inherits, so a form shown the same way on several
+ * pages, e.g. a letterhead, is only processed once. With a {@link MarginVerdictCache}, the outcome of pages
+ * is also looked up by their content hash, to recognize pages of earlier documents.
+ * <p>
+ * An instance may be reused for several pages of one document, but not concurrently.
+ */
+final class BarcodeAreaContentDetector extends PDFGraphicsStreamEngine {
+
+    private static final GlyphList GLYPH_LIST = glyphListWithAdditionalMappings();
+
+    // how many operators to process between each report to the validation context
+    private static final int OPERATORS_PER_REPORT = 4096;
+
+    private static final Logger LOG = LoggerFactory.getLogger(BarcodeAreaContentDetector.class);
+
+    // the operators which change the state needed to place glyphs, images and paths, and show forms
+    private static final Set<String> STATE_OPERATORS = operators("BT", "ET", "cm", "Do", "gs", "q", "Q",
+            "T*", "Tc", "Td", "TD", "Tf", "TL", "Tm", "Tr", "Ts", "Tw", "Tz");
+    private static final Set<String> TEXT_OPERATORS = operators("Tj", "TJ", "'", "\"");
+    private static final Set<String> IMAGE_OPERATORS = operators("BI");
+    private static final Set<String> VECTOR_GRAPHICS_OPERATORS = operators("m", "l", "c", "v", "y", "h", "re",
+            "S", "s", "f", "F", "f*", "B", "B*", "b", "b*", "n", "W", "W*", "w", "sh",
+            "g", "G", "rg", "RG", "k", "K", "cs", "CS", "sc", "SC", "scn", "SCN");
+
+    private final ValidationContext context;
+    private final BarcodeAreaContent content;
+    private final Set<String> processedOperators;
+    private final MarginVerdictCache sharedVerdicts;
+    private final Map<PageContent, Boolean> pageVerdicts = new HashMap<>();
+    private final Map<FormContent, Boolean> formVerdicts = new HashMap<>();
+    private ContentHasher contentHasher;
+    private int unreportedOperators;
+    private Rectangle2D area;
+    private int pageRotation;
+    private float pageWidth;
+    private float pageHeight;
+    private float lowerLeftX;
+    private float lowerLeftY;
+
+    // the bounding box of the current path, in the coordinates of the page
+    private boolean hasPath;
+    private float pathMinX;
+    private float pathMinY;
+    private float pathMaxX;
+    private float pathMaxY;
+    private final Point2D.Float currentPoint = new Point2D.Float();
+    private final Point2D.Float subpathStart = new Point2D.Float();
+    private boolean clipPending;
+
+    /**
+     * @param content the kinds of content to detect
+     * @param sharedVerdicts the outcomes of pages of other documents, or {@code null}
+     */
+    BarcodeAreaContentDetector(ValidationContext context, BarcodeAreaContent content, MarginVerdictCache sharedVerdicts) {
+        super(null);
+        this.context = context;
+        this.content = content;
+        this.sharedVerdicts = sharedVerdicts;
+        Set<String> operators = new HashSet<>(STATE_OPERATORS);
+        if (content.text) {
+            operators.addAll(TEXT_OPERATORS);
+        }
+        if (content.images) {
+            operators.addAll(IMAGE_OPERATORS);
+        } else {
+            // skips image XObjects without loading them
+            addOperator(new DrawObject(this));
+        }
+        if (content.vectorGraphics) {
+            operators.addAll(VECTOR_GRAPHICS_OPERATORS);
+        }
+        this.processedOperators = operators;
+    }
+
+    /**
+     * @param page the page to inspect
+     * @param cropBox the resolved crop box of the page
+     * @param area the area, in the coordinates of the displayed page, with the origin in the upper left corner
+     * @return {@code true} if the page shows any of the kinds of content to detect within the area
+     */
+    boolean hasContentInArea(PDPage page, PDRectangle cropBox, Rectangle2D area) throws IOException {
+        if (!page.hasContents() || !(content.text || content.images || content.vectorGraphics)) {
+            return false;
+        }
+        this.area = area;
+        this.pageRotation = page.getRotation();
+        this.pageWidth = cropBox.getWidth();
+        this.pageHeight = cropBox.getHeight();
+        this.lowerLeftX = cropBox.getLowerLeftX();
+        this.lowerLeftY = cropBox.getLowerLeftY();
+
+        COSBase[] contents = contentStreams(page);
+        COSBase resources = PDPageTree.getInheritableAttribute(page.getCOSObject(), COSName.RESOURCES);
+        PageContent pageContent = new PageContent(contents, resources, pageRotation, cropBox, area);
+        Boolean known = pageVerdicts.get(pageContent);
+        ContentHash contentHash = null;
+        if (known == null && sharedVerdicts != null) {
+            contentHash = contentHash(contents, resources, cropBox);
+            known = contentHash != null ? sharedVerdicts.get(contentHash) : null;
+        }
+        if (known != null) {
+            if (context.metrics != null) {
+                context.metrics.marginCacheHit();
+            }
+            pageVerdicts.put(pageContent, known);
+            return known;
+        }
+
+        if (context.metrics != null) {
+            context.metrics.contentStreamBytes(contentStreamLength(page));
+        }
+        boolean contentFound;
+        try {
+            processPage(page);
+            contentFound = false;
+        } catch (ContentFound found) {
+            contentFound = true;
+        } finally {
+            hasPath = false;
+            clipPending = false;
+        }
+        reportOperators();
+        pageVerdicts.put(pageContent, contentFound);
+        if (contentHash != null) {
+            sharedVerdicts.put(contentHash, contentFound);
+        }
+        return contentFound;
+    }
+
+    /**
+     * Report the operators processed since the last report, when the processing of a page is completed. This is not
+     * done if the processing fails, so a budget exceeded by the report never replaces the failure, and the operators
+     * are then reported with the next page.
+     */
+    private void reportOperators() {
+        long operators = unreportedOperators;
+        unreportedOperators = 0;
+        context.processedContentStreamOperators(operators);
+    }
+
+    private ContentHash contentHash(COSBase[] contents, COSBase resources, PDRectangle cropBox) {
+        if (contentHasher == null) {
+            contentHasher = new ContentHasher();
+        }
+        try {
+            return contentHasher.pageHash(contents, resources, pageRotation, cropBox, area, content);
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Unable to compute the content hash of a page, so it is inspected regardless of the margin verdict cache.", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void showForm(PDFormXObject form) throws IOException {
+        showRememberingOutcome(form, () -> super.showForm(form));
+    }
+
+    @Override
+    public void showTransparencyGroup(PDTransparencyGroup form) throws IOException {
+        showRememberingOutcome(form, () -> super.showTransparencyGroup(form));
+    }
+
+    private void showRememberingOutcome(PDFormXObject form, FormProcessing processing) throws IOException {
+        if (getTextMatrix() != null) {
+            // a form shown inside a text object is not valid PDF, and may depend on the text matrix
+            processing.process();
+            return;
+        }
+        PDResources inheritedResources = form.getResources() == null ? getResources() : null;
+        FormContent formContent = new FormContent(form.getCOSObject(), inheritedResources != null ? inheritedResources.getCOSObject() : null,
+                getGraphicsState(), content.vectorGraphics, pageRotation, lowerLeftX, lowerLeftY, pageWidth, pageHeight, area);
+        Boolean known = formVerdicts.get(formContent);
+        if (known != null) {
+            if (context.metrics != null) {
+                context.metrics.marginCacheHit();
+            }
+            if (known) {
+                throw ContentFound.INSTANCE;
+            }
+            return;
+        }
+        try {
+            processing.process();
+        } catch (ContentFound found) {
+            formVerdicts.put(formContent, true);
+            throw found;
+        }
+        formVerdicts.put(formContent, false);
+    }
+
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        if (++unreportedOperators == OPERATORS_PER_REPORT) {
+            unreportedOperators = 0;
+            context.processedContentStreamOperators(OPERATORS_PER_REPORT);
+        }
+        if (processedOperators.contains(operator.getName())) {
+            super.processOperator(operator, operands);
+        }
+    }
+
+    @Override
+    protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement) throws IOException {
+        // Type 3 glyphs are intentionally not descended into, as their content is not text
+        float x = textRenderingMatrix.getTranslateX() - lowerLeftX;
+        float y = textRenderingMatrix.getTranslateY() - lowerLeftY;
+        if (isInArea(x, y) && isVisible(font, code)) {
+            throw ContentFound.INSTANCE;
+        }
+    }
+
+    @Override
+    public void drawImage(PDImage image) {
+        // the image fills the unit square of the current transformation
+        Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+        Point2D.Float p0 = ctm.transformPoint(0, 0);
+        Point2D.Float p1 = ctm.transformPoint(1, 0);
+        Point2D.Float p2 = ctm.transformPoint(0, 1);
+        Point2D.Float p3 = ctm.transformPoint(1, 1);
+        if (intersectsArea(min(p0.x, p1.x, p2.x, p3.x), min(p0.y, p1.y, p2.y, p3.y), max(p0.x, p1.x, p2.x, p3.x), max(p0.y, p1.y, p2.y, p3.y))) {
+            throw ContentFound.INSTANCE;
+        }
+    }
+
+    @Override
+    public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) {
+        extendPath(p0);
+        extendPath(p1);
+        extendPath(p2);
+        extendPath(p3);
+        currentPoint.setLocation(p0);
+        subpathStart.setLocation(p0);
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+        extendPath(x, y);
+        currentPoint.setLocation(x, y);
+        subpathStart.setLocation(x, y);
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+        extendPath(x, y);
+        currentPoint.setLocation(x, y);
+    }
+
+    @Override
+    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+        // the curve is within the bounding box of its control points
+        extendPath(x1, y1);
+        extendPath(x2, y2);
+        extendPath(x3, y3);
+        currentPoint.setLocation(x3, y3);
+    }
+
+    @Override
+    public Point2D getCurrentPoint() {
+        return hasPath ? new Point2D.Float(currentPoint.x, currentPoint.y) : null;
+    }
+
+    @Override
+    public void closePath() {
+        currentPoint.setLocation(subpathStart);
+    }
+
+    @Override
+    public void clip(int windingRule) {
+        // the clipping path is intersected with the current path when the path is ended
+        clipPending = true;
+    }
+
+    @Override
+    public void endPath() {
+        endPath(false, false);
+    }
+
+    @Override
+    public void strokePath() {
+        endPath(false, !isWhite(getGraphicsState().getStrokingColor()));
+    }
+
+    @Override
+    public void fillPath(int windingRule) {
+        endPath(!isWhite(getGraphicsState().getNonStrokingColor()), false);
+    }
+
+    @Override
+    public void fillAndStrokePath(int windingRule) {
+        PDGraphicsState graphicsState = getGraphicsState();
+        endPath(!isWhite(graphicsState.getNonStrokingColor()), !isWhite(graphicsState.getStrokingColor()));
+    }
+
+    @Override
+    public void shadingFill(COSName shadingName) {
+        Rectangle2D clippingRegion = getGraphicsState().getCurrentClippingPath().getBounds2D();
+        if (intersectsArea((float) clippingRegion.getMinX(), (float) clippingRegion.getMinY(), (float) clippingRegion.getMaxX(), (float) clippingRegion.getMaxY())) {
+            throw ContentFound.INSTANCE;
+        }
+    }
+
+    private void endPath(boolean filled, boolean stroked) {
+        if (hasPath) {
+            boolean painted;
+            if (stroked) {
+                float halfLineWidth = transformWidth(getGraphicsState().getLineWidth()) / 2;
+                painted = intersectsArea(pathMinX - halfLineWidth, pathMinY - halfLineWidth, pathMaxX + halfLineWidth, pathMaxY + halfLineWidth);
+            } else {
+                painted = filled && intersectsArea(pathMinX, pathMinY, pathMaxX, pathMaxY);
+            }
+            if (clipPending) {
+                getGraphicsState().intersectClippingPath(new Area(new Rectangle2D.Float(pathMinX, pathMinY, pathMaxX - pathMinX, pathMaxY - pathMinY)));
+            }
+            hasPath = false;
+            clipPending = false;
+            if (painted) {
+                throw ContentFound.INSTANCE;
+            }
+        }
+        clipPending = false;
+    }
+
+    private void extendPath(Point2D point) {
+        extendPath((float) point.getX(), (float) point.getY());
+    }
+
+    private void extendPath(float x, float y) {
+        if (hasPath) {
+            pathMinX = Math.min(pathMinX, x);
+            pathMinY = Math.min(pathMinY, y);
+            pathMaxX = Math.max(pathMaxX, x);
+            pathMaxY = Math.max(pathMaxY, y);
+        } else {
+            hasPath = true;
+            pathMinX = pathMaxX = x;
+            pathMinY = pathMaxY = y;
+        }
+    }
+
+    /**
+     * @return whether the rectangle, in the coordinates of the page, overlaps the area
+     */
+    private boolean intersectsArea(float minX, float minY, float maxX, float maxY) {
+        float x0 = minX - lowerLeftX;
+        float y0 = minY - lowerLeftY;
+        float x1 = maxX - lowerLeftX;
+        float y1 = maxY - lowerLeftY;
+        switch (pageRotation) {
+            case 0: return overlapsArea(x0, pageHeight - y1, x1, pageHeight - y0);
+            case 90: return overlapsArea(y0, x0, y1, x1);
+            case 180: return overlapsArea(pageWidth - x1, y0, pageWidth - x0, y1);
+            case 270: return overlapsArea(pageHeight - y1, pageWidth - x1, pageHeight - y0, pageWidth - x0);
+            default: throw new IllegalStateException("Unexpected page rotation " + pageRotation);
+        }
+    }
+
+    private boolean overlapsArea(double minX, double minY, double maxX, double maxY) {
+        // unlike Rectangle2D.intersects, a line without width or height overlaps the area it crosses
+        return minX < area.getMaxX() && maxX > area.getMinX() && minY < area.getMaxY() && maxY > area.getMinY();
+    }
+
+    /**
+     * @return whether the color is white in a device color space, which does not disturb the barcode
+     */
+    private static boolean isWhite(PDColor color) {
+        float[] components = color.getComponents();
+        if (color.getColorSpace() instanceof PDDeviceGray || color.getColorSpace() instanceof PDDeviceRGB) {
+            for (float component : components) {
+                if (component < 1) {
+                    return false;
+                }
+            }
+            return components.length > 0;
+        } else if (color.getColorSpace() instanceof PDDeviceCMYK) {
+            for (float component : components) {
+                if (component > 0) {
+                    return false;
+                }
+            }
+            return components.length > 0;
+        }
+        return false;
+    }
+
+    private static float min(float a, float b, float c, float d) {
+        return Math.min(Math.min(a, b), Math.min(c, d));
+    }
+
+    private static float max(float a, float b, float c, float d) {
+        return Math.max(Math.max(a, b), Math.max(c, d));
+    }
+
+    private static Set<String> operators(String... names) {
+        return unmodifiableSet(new HashSet<>(asList(names)));
+    }
+
+    /**
+     * @return the content streams of the page
+     */
+    private static COSBase[] contentStreams(PDPage page) {
+        COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        if (contents instanceof COSArray) {
+            COSArray streams = (COSArray) contents;
+            COSBase[] resolved = new COSBase[streams.size()];
+            for (int i = 0; i < resolved.length; i++) {
+                resolved[i] = streams.getObject(i);
+            }
+            return resolved;
+        }
+        return new COSBase[] { contents };
+    }
+
+    /**
+     * @return the encoded length of the content streams of the page
+     */
+    static long contentStreamLength(PDPage page) {
+        COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        if (contents instanceof COSStream) {
+            return ((COSStream) contents).getLength();
+        }
+        long length = 0;
+        if (contents instanceof COSArray) {
+            for (COSBase stream : (COSArray) contents) {
+                COSBase resolved = stream instanceof COSObject ? ((COSObject) stream).getObject() : stream;
+                if (resolved instanceof COSStream) {
+                    length += ((COSStream) resolved).getLength();
+                }
+            }
+        }
+        return length;
+    }
+
+    private boolean isInArea(float x, float y) {
+        switch (pageRotation) {
+            case 0: return area.contains(x, pageHeight - y);
+            case 90: return area.contains(y, x);
+            case 180: return area.contains(pageWidth - x, y);
+            case 270: return area.contains(pageHeight - y, pageWidth - x);
+            default: throw new IllegalStateException("Unexpected page rotation " + pageRotation);
+        }
+    }
+
+    private static boolean isVisible(PDFont font, int code) throws IOException {
+        String unicode = font.toUnicode(code, GLYPH_LIST);
+        if (unicode == null) {
+            // like Acrobat, coerce the code of simple fonts into Unicode, and skip the glyphs of composite fonts
+            return font instanceof PDSimpleFont && (char) code > ' ';
+        }
+        for (int i = 0; i < unicode.length(); i++) {
+            if (unicode.charAt(i) > ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static GlyphList glyphListWithAdditionalMappings() {
+        try (InputStream additionalMappings = GlyphList.class.getResourceAsStream("/org/apache/pdfbox/resources/glyphlist/additional.txt")) {
+            return new GlyphList(GlyphList.getAdobeGlyphList(), additionalMappings);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface FormProcessing {
+        void process() throws IOException;
+    }
+
+    /**
+     * The content of a page, by the identity of its content stream and resource objects.
+     */
+    private static final class PageContent {
+
+        private final COSBase[] contents;
+        private final COSBase resources;
+        private final int rotation;
+        private final float lowerLeftX;
+        private final float lowerLeftY;
+        private final float width;
+        private final float height;
+        private final Rectangle2D area;
+        private final int hashCode;
+
+        PageContent(COSBase[] contents, COSBase resources, int rotation, PDRectangle cropBox, Rectangle2D area) {
+            this.contents = contents;
+            this.resources = resources;
+            this.rotation = rotation;
+            this.lowerLeftX = cropBox.getLowerLeftX();
+            this.lowerLeftY = cropBox.getLowerLeftY();
+            this.width = cropBox.getWidth();
+            this.height = cropBox.getHeight();
+            this.area = area;
+            int hash = Arrays.hashCode(contents);
+            hash = 31 * hash + System.identityHashCode(resources);
+            hash = 31 * hash + rotation;
+            hash = 31 * hash + Float.hashCode(width);
+            this.hashCode = 31 * hash + Float.hashCode(height);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PageContent)) {
+                return false;
+            }
+            PageContent that = (PageContent) o;
+            return hashCode == that.hashCode && Arrays.equals(contents, that.contents) && resources == that.resources && rotation == that.rotation
+                    && lowerLeftX == that.lowerLeftX && lowerLeftY == that.lowerLeftY && width == that.width && height == that.height
+                    && area.equals(that.area);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * A form XObject shown on a page, by the identity of the form, the resources it inherits if it has no resources
+     * of its own, and the state it is shown with which affects where its glyphs end up and how they map to Unicode.
+     */
+    private static final class FormContent {
+
+        private final COSStream form;
+        private final COSBase inheritedResources;
+        private final Matrix transformation;
+        private final COSBase font;
+        private final float fontSize;
+        private final float characterSpacing;
+        private final float wordSpacing;
+        private final float horizontalScaling;
+        private final float leading;
+        private final float rise;
+        private final float lineWidth;
+        private final boolean whiteStroke;
+        private final boolean whiteFill;
+        private final Rectangle2D clippingRegion;
+        private final int rotation;
+        private final float lowerLeftX;
+        private final float lowerLeftY;
+        private final float pageWidth;
+        private final float pageHeight;
+        private final Rectangle2D area;
+        private final int hashCode;
+
+        /**
+         * @param vectorGraphics {@code true} to also identify the form by the line width, whether the colors are white,
+         *                       and the bounds of the clipping path it is shown with
+         */
+        FormContent(COSStream form, COSBase inheritedResources, PDGraphicsState graphicsState, boolean vectorGraphics, int rotation,
+                    float lowerLeftX, float lowerLeftY, float pageWidth, float pageHeight, Rectangle2D area) {
+            PDTextState textState = graphicsState.getTextState();
+            this.form = form;
+            this.inheritedResources = inheritedResources;
+            this.transformation = graphicsState.getCurrentTransformationMatrix().clone();
+            this.font = textState.getFont() != null ? textState.getFont().getCOSObject() : null;
+            this.fontSize = textState.getFontSize();
+            this.characterSpacing = textState.getCharacterSpacing();
+            this.wordSpacing = textState.getWordSpacing();
+            this.horizontalScaling = textState.getHorizontalScaling();
+            this.leading = textState.getLeading();
+            this.rise = textState.getRise();
+            this.lineWidth = vectorGraphics ? graphicsState.getLineWidth() : 0;
+            this.whiteStroke = vectorGraphics && isWhite(graphicsState.getStrokingColor());
+            this.whiteFill = vectorGraphics && isWhite(graphicsState.getNonStrokingColor());
+            this.clippingRegion = vectorGraphics ? graphicsState.getCurrentClippingPath().getBounds2D() : null;
+            this.rotation = rotation;
+            this.lowerLeftX = lowerLeftX;
+            this.lowerLeftY = lowerLeftY;
+            this.pageWidth = pageWidth;
+            this.pageHeight = pageHeight;
+            this.area = area;
+            this.hashCode = 31 * System.identityHashCode(form) + this.transformation.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FormContent)) {
+                return false;
+            }
+            FormContent that = (FormContent) o;
+            return hashCode == that.hashCode && form == that.form && inheritedResources == that.inheritedResources && font == that.font
+                    && transformation.equals(that.transformation) && fontSize == that.fontSize && characterSpacing == that.characterSpacing
+                    && wordSpacing == that.wordSpacing && horizontalScaling == that.horizontalScaling && leading == that.leading && rise == that.rise
+                    && lineWidth == that.lineWidth && whiteStroke == that.whiteStroke && whiteFill == that.whiteFill
+                    && Objects.equals(clippingRegion, that.clippingRegion)
+                    && rotation == that.rotation && lowerLeftX == that.lowerLeftX && lowerLeftY == that.lowerLeftY
+                    && pageWidth == that.pageWidth && pageHeight == that.pageHeight && area.equals(that.area);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Stops the processing of the content stream as soon as any of the kinds of content to detect is found.
+     * Preallocated and without stack trace, as it is not an error.
+     */
+    private static final class ContentFound extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        static final ContentFound INSTANCE = new ContentFound();
+
+        private ContentFound() {
+            super(null, null, false, false);
+        }
+    }
+
+}
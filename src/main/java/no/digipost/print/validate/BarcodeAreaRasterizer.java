@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.BarcodeAreaContent;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.rendering.PageDrawer;
+import org.apache.pdfbox.rendering.PageDrawerParameters;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Finds content within an area of a page by rendering only that area, at a low resolution, and looking for
+ * pixels which are not white. This is the fallback for pages the {@link BarcodeAreaContentDetector} is unable
+ * to process. PDFBox still interprets all the content of the page, but only the area is rasterized, into a
+ * small image which is reused for all the pages. Only the {@link BarcodeAreaContent kinds of content} to find
+ * are drawn, where the paths and images of Type 3 glyphs are text. Annotations are not drawn, as they are not
+ * considered by the {@link BarcodeAreaContentDetector} either.
+ * <p>
+ * The operators processed are reported to the {@link ValidationContext}, which stops the rendering
+ * if the validation exceeds its budget, or is cancelled.
+ * <p>
+ * An instance may be reused for several pages, but not concurrently.
+ */
+final class BarcodeAreaRasterizer {
+
+    // the resolution the area is rendered at, where 72 DPI is one pixel per point
+    private static final float DPI = 72;
+    private static final double SCALE = DPI / 72.0;
+
+    // how many operators to process between each report to the validation context
+    private static final int OPERATORS_PER_REPORT = 4096;
+
+    private static final int WHITE = 0xFFFFFF;
+
+    private final ValidationContext context;
+    private final BarcodeAreaContent content;
+    private PDDocument document;
+    private AreaRenderer renderer;
+    private BufferedImage image;
+    private int unreportedOperators;
+
+    BarcodeAreaRasterizer(ValidationContext context, BarcodeAreaContent content) {
+        this.context = context;
+        this.content = content;
+    }
+
+    /**
+     * @param document the document of the pages to render
+     */
+    void setDocument(PDDocument document) {
+        if (this.document != document) {
+            this.document = document;
+            this.renderer = null;
+        }
+    }
+
+    /**
+     * @param pageIndex the zero-based index of the page in the {@link #setDocument(PDDocument) document}
+     * @param area the area to look for content within, in the coordinates of the displayed (rotated) page,
+     *             with the origin in the upper left corner of the crop box
+     * @return {@code true} if any of the pixels of the area are not white
+     */
+    boolean hasContentInArea(int pageIndex, Rectangle2D area) throws IOException {
+        if (!content.text && !content.images && !content.vectorGraphics) {
+            return false;
+        }
+        BufferedImage areaImage = image(pixels(area.getWidth()), pixels(area.getHeight()));
+        Graphics2D graphics = areaImage.createGraphics();
+        try {
+            graphics.setBackground(Color.WHITE);
+            graphics.clearRect(0, 0, areaImage.getWidth(), areaImage.getHeight());
+            graphics.scale(SCALE, SCALE);
+            graphics.translate(-area.getX(), -area.getY());
+            graphics.clip(area);
+            renderer().renderPageToGraphics(pageIndex, graphics);
+        } finally {
+            graphics.dispose();
+        }
+        // not reported if the rendering fails, so a budget exceeded by the report never replaces the failure
+        long operators = unreportedOperators;
+        unreportedOperators = 0;
+        context.processedContentStreamOperators(operators);
+        for (int pixel : ((DataBufferInt) areaImage.getRaster().getDataBuffer()).getData()) {
+            if ((pixel & WHITE) != WHITE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int pixels(double points) {
+        return Math.max(1, (int) Math.ceil(points * SCALE));
+    }
+
+    private BufferedImage image(int width, int height) {
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        return image;
+    }
+
+    private AreaRenderer renderer() {
+        if (renderer == null) {
+            renderer = new AreaRenderer(document);
+        }
+        return renderer;
+    }
+
+    private final class AreaRenderer extends PDFRenderer {
+
+        AreaRenderer(PDDocument document) {
+            super(document);
+            RenderingHints renderingHints = new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+            renderingHints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            renderingHints.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            setRenderingHints(renderingHints);
+            setSubsamplingAllowed(true);
+        }
+
+        @Override
+        protected PageDrawer createPageDrawer(PageDrawerParameters parameters) throws IOException {
+            AreaDrawer drawer = new AreaDrawer(parameters);
+            drawer.setAnnotationFilter(annotation -> false);
+            return drawer;
+        }
+    }
+
+    private final class AreaDrawer extends PageDrawer {
+
+        private boolean inType3Glyph;
+
+        AreaDrawer(PageDrawerParameters parameters) throws IOException {
+            super(parameters);
+        }
+
+        @Override
+        protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+            if (++unreportedOperators == OPERATORS_PER_REPORT) {
+                unreportedOperators = 0;
+                context.processedContentStreamOperators(OPERATORS_PER_REPORT);
+            }
+            super.processOperator(operator, operands);
+        }
+
+        @Override
+        protected void showFontGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement) throws IOException {
+            if (content.text) {
+                super.showFontGlyph(textRenderingMatrix, font, code, displacement);
+            }
+        }
+
+        @Override
+        protected void showType3Glyph(Matrix textRenderingMatrix, PDType3Font font, int code, Vector displacement) throws IOException {
+            if (content.text) {
+                // the paths and images of Type 3 glyphs are text
+                inType3Glyph = true;
+                try {
+                    super.showType3Glyph(textRenderingMatrix, font, code, displacement);
+                } finally {
+                    inType3Glyph = false;
+                }
+            }
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage) throws IOException {
+            if (content.images || inType3Glyph) {
+                super.drawImage(pdImage);
+            }
+        }
+
+        @Override
+        public void strokePath() throws IOException {
+            if (drawsPaths()) {
+                super.strokePath();
+            } else {
+                endPath();
+            }
+        }
+
+        @Override
+        public void fillPath(int windingRule) throws IOException {
+            if (drawsPaths()) {
+                super.fillPath(windingRule);
+            } else {
+                endPath();
+            }
+        }
+
+        @Override
+        public void fillAndStrokePath(int windingRule) throws IOException {
+            if (drawsPaths()) {
+                super.fillAndStrokePath(windingRule);
+            } else {
+                endPath();
+            }
+        }
+
+        @Override
+        public void shadingFill(COSName shadingName) throws IOException {
+            if (drawsPaths()) {
+                super.shadingFill(shadingName);
+            }
+        }
+
+        private boolean drawsPaths() {
+            return content.vectorGraphics || inType3Glyph;
+        }
+    }
+
+}
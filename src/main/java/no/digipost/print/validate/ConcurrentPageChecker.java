@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.MemoryPolicy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Checks the pages of a document concurrently. The pages are split into consecutive ranges, and
+ * as a {@link PDDocument} is not thread-safe, each range is checked by a separate task with its own
+ * instance of the document, parsed from the same {@link PdfSource}. The first range is checked
+ * by the calling thread, using the already parsed document. Parsing the whole document once per range
+ * means the time spent parsing, and the memory used by the parsed documents, grow with the number of ranges,
+ * so documents with fewer than {@value #MIN_PAGES_PER_RANGE} pages per range are split into fewer ranges,
+ * and documents with fewer than twice as many pages are not split at all.
+ * <p>
+ * The calling thread checks any following range whose task has not yet started on the executor itself,
+ * instead of waiting for it. Checking the pages of a document on the same executor as the document is
+ * validated on, e.g. with {@link PdfBatchValidator}, can therefore not deadlock, even when all the threads
+ * of the executor are busy validating documents, nor fail when the executor rejects the tasks.
+ * <p>
+ * The outcomes of the ranges are merged in page order, including whether a range would even have
+ * been reached, so the result is the same as checking the pages sequentially. The exception is the
+ * {@link PdfValidationSettings#budget budget}, as the ranges may check pages which checking sequentially
+ * would never reach, and those pages count against the same budget, which may then be exceeded where
+ * checking sequentially would stay within it. As soon as the outcome is known, the ranges still being
+ * checked are {@link PageChecks#stop() stopped}, and the pages they are checking are waited for, so no
+ * range uses the validation after its pages have been checked.
+ */
+final class ConcurrentPageChecker {
+
+    static final int MIN_PAGES_PER_RANGE = 4;
+
+    private final Executor executor;
+    private final int parallelism;
+
+    ConcurrentPageChecker(Executor executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param memoryPolicy how much main memory each separately parsed instance of the document may use
+     */
+    PageChecks checkPages(PDDocument document, PdfSource documentSource, MemoryPolicy memoryPolicy, Supplier<PageChecks> newPageChecks) throws IOException {
+        int numberOfPages = document.getNumberOfPages();
+        int ranges = Math.max(1, Math.min(parallelism, numberOfPages / MIN_PAGES_PER_RANGE));
+        List<PageRange> followingRanges = new ArrayList<>(ranges - 1);
+        boolean rejected = false;
+        for (int range = 1; range < ranges; range++) {
+            int fromPageIndex = range * numberOfPages / ranges;
+            int toPageIndex = range == ranges - 1 ? Integer.MAX_VALUE : (range + 1) * numberOfPages / ranges;
+            PageRange followingRange = new PageRange(documentSource, memoryPolicy, fromPageIndex, toPageIndex, newPageChecks.get());
+            followingRanges.add(followingRange);
+            if (!rejected) {
+                try {
+                    executor.execute(followingRange::checkIfNotStarted);
+                } catch (RejectedExecutionException e) {
+                    // this and the following ranges are left unstarted, and are checked by the calling thread
+                    rejected = true;
+                }
+            }
+        }
+
+        PageChecks pageChecks = newPageChecks.get();
+        try {
+            pageChecks.checkPages(document, 0, ranges == 1 ? Integer.MAX_VALUE : numberOfPages / ranges);
+            for (PageRange followingRange : followingRanges) {
+                if (pageChecks.isConclusive()) {
+                    break;
+                }
+                CheckedRange checkedRange = followingRange.checkOrAwait();
+                pageChecks.merge(checkedRange.pageChecks);
+                if (checkedRange.failure != null && !pageChecks.isConclusive()) {
+                    throw checkedRange.failure;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            // a range which is already being checked stops before its next page, and a range not yet started is never checked
+            followingRanges.forEach(PageRange::stop);
+            followingRanges.forEach(PageRange::awaitStopped);
+        }
+        return pageChecks;
+    }
+
+    /**
+     * A range of pages checked with a separately parsed instance of the document, either by a task on the
+     * executor, or by the thread checking the first range, whichever claims it first.
+     */
+    private static final class PageRange {
+        final PdfSource documentSource;
+        final MemoryPolicy memoryPolicy;
+        final int fromPageIndex;
+        final int toPageIndex;
+        final PageChecks pageChecks;
+        final AtomicBoolean started = new AtomicBoolean();
+        final CompletableFuture<CheckedRange> checked = new CompletableFuture<>();
+
+        PageRange(PdfSource documentSource, MemoryPolicy memoryPolicy, int fromPageIndex, int toPageIndex, PageChecks pageChecks) {
+            this.documentSource = documentSource;
+            this.memoryPolicy = memoryPolicy;
+            this.fromPageIndex = fromPageIndex;
+            this.toPageIndex = toPageIndex;
+            this.pageChecks = pageChecks;
+        }
+
+        void checkIfNotStarted() {
+            if (started.compareAndSet(false, true)) {
+                checkAndComplete();
+            }
+        }
+
+        /**
+         * Checks the range on the calling thread if its task has not yet started, or else waits for the task to complete.
+         */
+        CheckedRange checkOrAwait() {
+            if (started.compareAndSet(false, true)) {
+                return checkAndComplete();
+            }
+            return checked.join();
+        }
+
+        void stop() {
+            pageChecks.stop();
+            if (started.compareAndSet(false, true)) {
+                checked.complete(new CheckedRange(pageChecks, null));
+            }
+        }
+
+        /**
+         * Waits until the range is no longer being checked, after it has been {@link #stop() stopped}.
+         */
+        void awaitStopped() {
+            try {
+                checked.join();
+            } catch (CompletionException | CancellationException e) {
+                // the failure is only of interest when the outcome of the range is needed
+            }
+        }
+
+        private CheckedRange checkAndComplete() {
+            try {
+                CheckedRange checkedRange = check();
+                checked.complete(checkedRange);
+                return checkedRange;
+            } catch (Throwable e) {
+                checked.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        private CheckedRange check() {
+            if (pageChecks.isStopped()) {
+                return new CheckedRange(pageChecks, null);
+            }
+            try (RandomAccessRead pdf = documentSource.open(); PDDocument document = Loader.loadPDF(pdf, memoryPolicy.streamCache())) {
+                pageChecks.checkPages(document, fromPageIndex, toPageIndex);
+                return new CheckedRange(pageChecks, null);
+            } catch (Exception e) {
+                return new CheckedRange(pageChecks, e);
+            }
+        }
+    }
+
+    private static final class CheckedRange {
+        final PageChecks pageChecks;
+        final Exception failure;
+
+        CheckedRange(PageChecks pageChecks, Exception failure) {
+            this.pageChecks = pageChecks;
+            this.failure = failure;
+        }
+    }
+
+}
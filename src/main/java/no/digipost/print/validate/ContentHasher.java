@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.MarginVerdictCache.ContentHash;
+import no.digipost.print.validate.PdfValidationSettings.BarcodeAreaContent;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.awt.geom.Rectangle2D;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Computes the {@link ContentHash} of pages, for looking them up in a {@link MarginVerdictCache}.
+ * The objects are hashed by value, following references, so equal pages of different documents have the
+ * same hash. The hash of the resources of the pages is computed only once for pages sharing the same resources.
+ * An instance must only be used for one document, and not concurrently.
+ */
+final class ContentHasher {
+
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte INTEGER = 2;
+    private static final byte FLOAT = 3;
+    private static final byte NAME = 4;
+    private static final byte STRING = 5;
+    private static final byte ARRAY = 6;
+    private static final byte DICTIONARY = 7;
+    private static final byte STREAM = 8;
+    private static final byte VISITED = 9;
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final Map<COSBase, byte[]> resourcesHashes = new IdentityHashMap<>();
+    private final byte[] buffer = new byte[8 * 1024];
+
+    /**
+     * @param contents the content streams of the page
+     * @param resources the resources of the page, or {@code null}
+     * @param area the area of the page to find content in
+     * @param content the kinds of content to find
+     */
+    ContentHash pageHash(COSBase[] contents, COSBase resources, int rotation, PDRectangle cropBox, Rectangle2D area,
+                         BarcodeAreaContent content) throws IOException {
+        MessageDigest sha256 = ResultKey.sha256();
+        DataOutputStream out = new DataOutputStream(new DigestOutputStream(DISCARD, sha256));
+        out.writeInt(rotation);
+        out.writeFloat(cropBox.getLowerLeftX());
+        out.writeFloat(cropBox.getLowerLeftY());
+        out.writeFloat(cropBox.getWidth());
+        out.writeFloat(cropBox.getHeight());
+        out.writeDouble(area.getX());
+        out.writeDouble(area.getY());
+        out.writeDouble(area.getWidth());
+        out.writeDouble(area.getHeight());
+        out.writeBoolean(content.text);
+        out.writeBoolean(content.images);
+        out.writeBoolean(content.vectorGraphics);
+        out.write(resourcesHash(resources));
+        Map<COSBase, Integer> visited = new IdentityHashMap<>();
+        out.writeInt(contents.length);
+        for (COSBase stream : contents) {
+            write(stream, out, visited);
+        }
+        out.flush();
+        return new ContentHash(sha256.digest());
+    }
+
+    private byte[] resourcesHash(COSBase resources) throws IOException {
+        byte[] hash = resourcesHashes.get(resources);
+        if (hash == null) {
+            MessageDigest sha256 = ResultKey.sha256();
+            DataOutputStream out = new DataOutputStream(new DigestOutputStream(DISCARD, sha256));
+            write(resources, out, new IdentityHashMap<>());
+            out.flush();
+            hash = sha256.digest();
+            resourcesHashes.put(resources, hash);
+        }
+        return hash;
+    }
+
+    private void write(COSBase object, DataOutputStream out, Map<COSBase, Integer> visited) throws IOException {
+        COSBase resolved = object instanceof COSObject ? ((COSObject) object).getObject() : object;
+        if (resolved instanceof COSArray || resolved instanceof COSDictionary) {
+            Integer index = visited.get(resolved);
+            if (index != null) {
+                out.writeByte(VISITED);
+                out.writeInt(index);
+                return;
+            }
+            visited.put(resolved, visited.size());
+        }
+
+        if (resolved instanceof COSBoolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(((COSBoolean) resolved).getValue());
+        } else if (resolved instanceof COSInteger) {
+            out.writeByte(INTEGER);
+            out.writeLong(((COSInteger) resolved).longValue());
+        } else if (resolved instanceof COSFloat) {
+            out.writeByte(FLOAT);
+            out.writeFloat(((COSFloat) resolved).floatValue());
+        } else if (resolved instanceof COSName) {
+            out.writeByte(NAME);
+            writeName((COSName) resolved, out);
+        } else if (resolved instanceof COSString) {
+            byte[] bytes = ((COSString) resolved).getBytes();
+            out.writeByte(STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (resolved instanceof COSArray) {
+            COSArray array = (COSArray) resolved;
+            out.writeByte(ARRAY);
+            out.writeInt(array.size());
+            for (int i = 0; i < array.size(); i++) {
+                write(array.get(i), out, visited);
+            }
+        } else if (resolved instanceof COSDictionary) {
+            COSDictionary dictionary = (COSDictionary) resolved;
+            out.writeByte(resolved instanceof COSStream ? STREAM : DICTIONARY);
+            out.writeInt(dictionary.size());
+            for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                writeName(entry.getKey(), out);
+                write(entry.getValue(), out, visited);
+            }
+            if (resolved instanceof COSStream) {
+                MessageDigest streamData = ResultKey.sha256();
+                try (InputStream rawData = ((COSStream) resolved).createRawInputStream()) {
+                    for (int read = rawData.read(buffer); read >= 0; read = rawData.read(buffer)) {
+                        streamData.update(buffer, 0, read);
+                    }
+                }
+                out.write(streamData.digest());
+            }
+        } else {
+            out.writeByte(NULL);
+        }
+    }
+
+    private static void writeName(COSName name, DataOutputStream out) throws IOException {
+        byte[] bytes = name.getName().getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.apache.fontbox.FontBoxFont;
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.font.CIDFontMapping;
+import org.apache.pdfbox.pdmodel.font.FontMapper;
+import org.apache.pdfbox.pdmodel.font.FontMapping;
+import org.apache.pdfbox.pdmodel.font.PDCIDSystemInfo;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Maps every font which is not embedded to the fallback font bundled with PDFBox, instead of looking for
+ * a substitute among the fonts of the system. The default {@link FontMapper} of PDFBox scans all the system
+ * fonts the first time a font which is not embedded is loaded, which may take seconds. The validation only
+ * needs the position of the glyphs, and the widths of the standard 14 fonts are known by PDFBox without
+ * any font program.
+ *
+ * @see PDFBoxConfigurer#useSystemFonts(boolean)
+ */
+final class FallbackFontMapper implements FontMapper {
+
+    private static final String FALLBACK_FONT = "/org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf";
+
+    private static final class Fallback {
+        static final TrueTypeFont FONT = load();
+
+        private static TrueTypeFont load() {
+            try (InputStream font = FallbackFontMapper.class.getResourceAsStream(FALLBACK_FONT)) {
+                if (font == null) {
+                    throw new IllegalStateException("The fallback font " + FALLBACK_FONT + " of PDFBox was not found");
+                }
+                return new TTFParser().parse(new RandomAccessReadBuffer(font));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to load the fallback font " + FALLBACK_FONT + " of PDFBox", e);
+            }
+        }
+    }
+
+    @Override
+    public FontMapping<TrueTypeFont> getTrueTypeFont(String baseFont, PDFontDescriptor fontDescriptor) {
+        return new FontMapping<>(Fallback.FONT, true);
+    }
+
+    @Override
+    public FontMapping<FontBoxFont> getFontBoxFont(String baseFont, PDFontDescriptor fontDescriptor) {
+        return new FontMapping<>(Fallback.FONT, true);
+    }
+
+    @Override
+    public CIDFontMapping getCIDFont(String baseFont, PDFontDescriptor fontDescriptor, PDCIDSystemInfo cidSystemInfo) {
+        return new CIDFontMapping(null, Fallback.FONT, true);
+    }
+}
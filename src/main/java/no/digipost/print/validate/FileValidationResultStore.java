@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Stores validation results as files in a directory, one small file per result, spread over subdirectories
+ * named by the first two digits of the key. A result is written to a temporary file which is then atomically
+ * renamed, so readers, including other processes sharing the directory, never see a partially written result.
+ * <p>
+ * Results may expire after a time to live, judged by the time the file was last modified. Expired files are
+ * not deleted by the store. As results are identified by the document and settings, but not by the version of
+ * the validator, the directory should be emptied when upgrading to a version which validates differently.
+ */
+public final class FileValidationResultStore implements ValidationResultStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileValidationResultStore.class);
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path directory;
+    private final Duration timeToLive;
+
+    /**
+     * Creates a store of results which never expire.
+     */
+    public FileValidationResultStore(Path directory) {
+        this(directory, null);
+    }
+
+    /**
+     * @param directory the directory to store the results in, which is created if it does not exist
+     * @param timeToLive for how long a result is kept after it was stored, or {@code null} to keep results forever
+     */
+    public FileValidationResultStore(Path directory, Duration timeToLive) {
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("timeToLive must be positive, was " + timeToLive);
+        }
+        this.directory = directory;
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public PdfValidationResult get(String key) throws IOException {
+        Path file = file(key);
+        byte[] encodedResult;
+        try {
+            if (timeToLive != null && Files.getLastModifiedTime(file).toMillis() + timeToLive.toMillis() <= System.currentTimeMillis()) {
+                return null;
+            }
+            encodedResult = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            return ValidationResultStore.decode(encodedResult);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ignoring invalid validation result in {}. ({})", file, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, PdfValidationResult result) throws IOException {
+        Path file = file(key);
+        Files.createDirectories(file.getParent());
+        Path written = Files.createTempFile(file.getParent(), key, ".tmp");
+        try {
+            Files.write(written, ValidationResultStore.encode(result));
+            Files.move(written, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(written);
+        }
+    }
+
+    private Path file(String key) {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Not a key of 64 lowercase hexadecimal digits: '" + key + "'");
+        }
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[directory=" + directory + ", timeToLive=" + timeToLive + "]";
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Finds whether a font name contains any of a set of supported font names, ignoring case, dashes and
+ * whitespace. The supported names are compiled into an Aho-Corasick automaton, so a font name is matched
+ * in a single pass without allocating, regardless of how many names are supported.
+ * <p>
+ * Characters are upper-cased one at a time with {@link Character#toUpperCase(char)}, independently of
+ * the default locale. Whitespace is the characters matched by {@code \s} in a regular expression.
+ */
+final class FontNameMatcher {
+
+    private final List<String> supportedNames;
+    private final boolean matchesAnyName;
+    private final int[] asciiColumns;
+    private final char[] nonAsciiAlphabet;
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final boolean[] accepting;
+
+    static FontNameMatcher of(Collection<String> supportedFontNames) {
+        TreeSet<String> normalized = new TreeSet<>();
+        for (String fontName : supportedFontNames) {
+            normalized.add(normalize(fontName));
+        }
+        return new FontNameMatcher(unmodifiableList(new ArrayList<>(normalized)));
+    }
+
+    private FontNameMatcher(List<String> supportedNames) {
+        this.supportedNames = supportedNames;
+        this.matchesAnyName = supportedNames.contains("");
+
+        TreeSet<Character> alphabet = new TreeSet<>();
+        int maxStates = 1;
+        for (String name : supportedNames) {
+            for (int i = 0; i < name.length(); i++) {
+                alphabet.add(name.charAt(i));
+            }
+            maxStates += name.length();
+        }
+        this.alphabetSize = alphabet.size();
+        this.asciiColumns = new int[128];
+        Arrays.fill(asciiColumns, -1);
+        StringBuilder nonAscii = new StringBuilder();
+        int column = 0;
+        for (char c : alphabet) {
+            if (c < 128) {
+                asciiColumns[c] = column;
+            } else {
+                nonAscii.append(c);
+            }
+            column++;
+        }
+        this.nonAsciiAlphabet = nonAscii.toString().toCharArray();
+
+        int[] trie = new int[maxStates * alphabetSize];
+        Arrays.fill(trie, -1);
+        boolean[] terminal = new boolean[maxStates];
+        int states = 1;
+        for (String name : supportedNames) {
+            int state = 0;
+            for (int i = 0; i < name.length(); i++) {
+                int transition = state * alphabetSize + column(name.charAt(i));
+                if (trie[transition] < 0) {
+                    trie[transition] = states++;
+                }
+                state = trie[transition];
+            }
+            terminal[state] = true;
+        }
+
+        // breadth first, turning the trie into a complete automaton by following the failure links
+        int[] failure = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < alphabetSize; c++) {
+            int child = trie[c];
+            if (child < 0) {
+                trie[c] = 0;
+            } else {
+                failure[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            terminal[state] |= terminal[failure[state]];
+            for (int c = 0; c < alphabetSize; c++) {
+                int transition = state * alphabetSize + c;
+                int fallback = trie[failure[state] * alphabetSize + c];
+                if (trie[transition] < 0) {
+                    trie[transition] = fallback;
+                } else {
+                    failure[trie[transition]] = fallback;
+                    queue[tail++] = trie[transition];
+                }
+            }
+        }
+        this.transitions = Arrays.copyOf(trie, states * alphabetSize);
+        this.accepting = Arrays.copyOf(terminal, states);
+    }
+
+    /**
+     * @return whether the given font name contains any of the supported names. {@code null} never matches.
+     */
+    boolean matches(String fontName) {
+        if (fontName == null) {
+            return false;
+        } else if (matchesAnyName) {
+            return true;
+        }
+        int state = 0;
+        for (int i = 0; i < fontName.length(); i++) {
+            char c = fontName.charAt(i);
+            if (isIgnored(c)) {
+                continue;
+            }
+            int column = column(Character.toUpperCase(c));
+            state = column < 0 ? 0 : transitions[state * alphabetSize + column];
+            if (accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int column(char c) {
+        if (c < 128) {
+            return asciiColumns[c];
+        }
+        int index = Arrays.binarySearch(nonAsciiAlphabet, c);
+        return index < 0 ? -1 : alphabetSize - nonAsciiAlphabet.length + index;
+    }
+
+    private static String normalize(String fontName) {
+        StringBuilder normalized = new StringBuilder(fontName.length());
+        for (int i = 0; i < fontName.length(); i++) {
+            char c = fontName.charAt(i);
+            if (!isIgnored(c)) {
+                normalized.append(Character.toUpperCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isIgnored(char c) {
+        return c == '-' || c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FontNameMatcher && supportedNames.equals(((FontNameMatcher) o).supportedNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return supportedNames.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + supportedNames;
+    }
+}
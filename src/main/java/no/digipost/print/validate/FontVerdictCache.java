@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded cache of whether fonts are supported for print, which may be shared by any number of
+ * {@link PdfValidator validators} and threads. Documents generated from the same templates refer to
+ * the same fonts over and over again, and each font is then only classified the first time it is seen.
+ * <p>
+ * Fonts are identified by their signature: the name and subtype of the font, whether it has a font
+ * descriptor, whether the font program is embedded, whether the font is damaged, and the
+ * {@link PdfValidationSettings#supportedFonts supported fonts} it was classified against.
+ * When the cache is full, the least recently used signature is evicted.
+ */
+public final class FontVerdictCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final int maxSize;
+    private final Map<FontSignature, Boolean> supportedBySignature;
+    private long hits;
+    private long misses;
+
+    public FontVerdictCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of font signatures to keep
+     */
+    public FontVerdictCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, was " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.supportedBySignature = new LinkedHashMap<FontSignature, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<FontSignature, Boolean> eldest) {
+                return size() > FontVerdictCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the number of fonts found in the cache
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of fonts which had to be classified, as they were not in the cache
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of font signatures currently in the cache
+     */
+    public synchronized int size() {
+        return supportedBySignature.size();
+    }
+
+    public synchronized void clear() {
+        supportedBySignature.clear();
+    }
+
+    synchronized Boolean get(FontSignature signature) {
+        Boolean supported = supportedBySignature.get(signature);
+        if (supported != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return supported;
+    }
+
+    synchronized void put(FontSignature signature, boolean supported) {
+        supportedBySignature.put(signature, supported);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "[size=" + supportedBySignature.size() + ", maxSize=" + maxSize + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+
+
+    static final class FontSignature {
+
+        final String name;
+        final String subType;
+        final boolean hasFontDescriptor;
+        final boolean embedded;
+        final boolean damaged;
+        final FontNameMatcher supportedFonts;
+
+        FontSignature(String name, String subType, boolean hasFontDescriptor, boolean embedded, boolean damaged, FontNameMatcher supportedFonts) {
+            this.name = name;
+            this.subType = subType;
+            this.hasFontDescriptor = hasFontDescriptor;
+            this.embedded = embedded;
+            this.damaged = damaged;
+            this.supportedFonts = supportedFonts;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FontSignature)) {
+                return false;
+            }
+            FontSignature that = (FontSignature) o;
+            return hasFontDescriptor == that.hasFontDescriptor && embedded == that.embedded && damaged == that.damaged
+                    && Objects.equals(name, that.name) && Objects.equals(subType, that.subType) && supportedFonts.equals(that.supportedFonts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, subType, hasFontDescriptor, embedded, damaged, supportedFonts);
+        }
+    }
+}
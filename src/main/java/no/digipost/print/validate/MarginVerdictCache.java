@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of whether pages show content in the barcode area, which may be shared by any number of
+ * {@link PdfValidator validators} and threads. Documents generated from the same templates often have pages
+ * with identical content, e.g. a standard last page, and each such page is then only inspected the first
+ * time it is seen.
+ * <p>
+ * Pages are identified by the SHA-256 hash of their content streams, everything their resources refer to,
+ * including fonts and form XObjects, their crop box and rotation, the barcode area of the
+ * {@link PdfValidationSettings#paperFormat paper format}, and the
+ * {@link PdfValidationSettings#barcodeAreaContent kinds of content} looked for in it. Hashing the resources of a page reads their
+ * streams, which is done once per document for pages sharing the same resources, but makes the cache
+ * worthwhile only for documents which actually repeat pages of earlier documents.
+ * When the cache is full, the least recently used page is evicted.
+ */
+public final class MarginVerdictCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final int maxSize;
+    private final Map<ContentHash, Boolean> contentInBarcodeAreaByPage;
+    private long hits;
+    private long misses;
+
+    public MarginVerdictCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of pages to keep
+     */
+    public MarginVerdictCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, was " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.contentInBarcodeAreaByPage = new LinkedHashMap<ContentHash, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ContentHash, Boolean> eldest) {
+                return size() > MarginVerdictCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the number of pages found in the cache
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of pages which had to be inspected, as they were not in the cache
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of pages currently in the cache
+     */
+    public synchronized int size() {
+        return contentInBarcodeAreaByPage.size();
+    }
+
+    public synchronized void clear() {
+        contentInBarcodeAreaByPage.clear();
+    }
+
+    synchronized Boolean get(ContentHash page) {
+        Boolean contentInBarcodeArea = contentInBarcodeAreaByPage.get(page);
+        if (contentInBarcodeArea != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return contentInBarcodeArea;
+    }
+
+    synchronized void put(ContentHash page, boolean contentInBarcodeArea) {
+        contentInBarcodeAreaByPage.put(page, contentInBarcodeArea);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "[size=" + contentInBarcodeAreaByPage.size() + ", maxSize=" + maxSize + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+
+    static final class ContentHash {
+
+        private final byte[] sha256;
+        private final int hashCode;
+
+        ContentHash(byte[] sha256) {
+            this.sha256 = sha256;
+            this.hashCode = Arrays.hashCode(sha256);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ContentHash)) {
+                return false;
+            }
+            ContentHash that = (ContentHash) o;
+            return hashCode == that.hashCode && Arrays.equals(sha256, that.sha256);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
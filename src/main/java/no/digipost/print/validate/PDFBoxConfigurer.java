@@ -15,6 +15,7 @@
  */
 package no.digipost.print.validate;
 
+import org.apache.pdfbox.pdmodel.font.FontMappers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +42,8 @@ public final class PDFBoxConfigurer {
 
         volatile boolean usePureJavaCMYKConversion = true;
 
+        volatile boolean useSystemFonts = true;
+
         private PDFBoxConfiguration() {
         }
     }
@@ -73,6 +76,19 @@ public final class PDFBoxConfigurer {
         pdfBoxConfiguration.useKcmsServiceProvider = use;
     }
 
+    /**
+     * Whether PDFBox may look for substitutes among the fonts of the system for fonts which are not embedded.
+     * PDFBox scans all the system fonts the first time such a font is loaded, which may take seconds.
+     * With {@code false}, all such fonts are mapped to the fallback font bundled with PDFBox, which is enough
+     * for validating documents. This replaces the font mapper of PDFBox for the whole JVM.
+     */
+    public static void useSystemFonts(boolean use) {
+        if (configured.get()) {
+            LOG.warn(alreadyConfiguredWarn, "useSystemFonts(" + use + ")");
+        }
+        pdfBoxConfiguration.useSystemFonts = use;
+    }
+
     static synchronized void configure() {
         configured.set(true);
         if (pdfBoxConfiguration.enabled) {
@@ -90,6 +106,10 @@ public final class PDFBoxConfigurer {
                         "to increase PDF rendering performance.");
                 System.setProperty("org.apache.pdfbox.rendering.UsePureJavaCMYKConversion", "true");
             }
+            if (!pdfBoxConfiguration.useSystemFonts) {
+                LOG.info("Configuring PDFBox to map fonts which are not embedded to its fallback font, without scanning the system fonts.");
+                FontMappers.set(new FallbackFontMapper());
+            }
         } else {
             LOG.info("Using default settings for PDFBox for printability-validator library");
         }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A check which is performed on each page of a document, as part of one single pass
+ * over all the pages. An instance is created for each validated document, and accumulates
+ * the outcome of the check for the whole document.
+ */
+interface PageCheck {
+
+    /**
+     * @return the phase of the validation the time spent by this check is accounted to
+     */
+    ValidationMetrics.Phase phase();
+
+    /**
+     * Called with the document, before its pages are given to {@link #check(int, PDPage, PDRectangle)}, for checks
+     * which need more of the document than the page. When the pages are checked concurrently, the pages of each
+     * range of pages may belong to a separately loaded instance of the document.
+     */
+    default void startDocument(PDDocument document) {
+    }
+
+    /**
+     * Check one page of the document. Pages are checked in the order they appear in the document.
+     *
+     * @param pageIndex the zero-based index of the page in the document
+     * @param page the page to check
+     * @param cropBox the resolved crop box of the page
+     */
+    void check(int pageIndex, PDPage page, PDRectangle cropBox) throws IOException;
+
+    /**
+     * @return {@code true} if checking any more pages can not change the outcome of this check,
+     *         which means no more pages will be given to {@link #check(int, PDPage, PDRectangle)}.
+     */
+    boolean isConclusive();
+
+    /**
+     * @return {@code true} if the pages checked so far give any validation errors
+     */
+    boolean hasErrors();
+
+    /**
+     * Merge in the outcome of another check of the same kind, which has checked the pages following
+     * the pages checked by this instance. Afterwards, this check has the same outcome as if it had
+     * checked all the pages itself.
+     */
+    void merge(PageCheck followingPages);
+
+    /**
+     * Add the validation errors found for the document, if any.
+     */
+    void addErrors(List<PdfValidationError> errors);
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The {@link PageCheck}s to perform on the pages of a document, or on a range of its pages.
+ */
+final class PageChecks {
+
+    private final List<PageCheck> checks;
+    private final boolean stopAtFirstError;
+    private final ValidationContext context;
+    private volatile boolean stopped;
+
+    /**
+     * @param checks the checks to perform on each page, in order
+     * @param stopAtFirstError {@code true} to stop checking as soon as any of the checks has found an error,
+     *                         without giving the current page to the remaining checks
+     * @param context the validation the checks are part of
+     */
+    PageChecks(List<PageCheck> checks, boolean stopAtFirstError, ValidationContext context) {
+        this.checks = checks;
+        this.stopAtFirstError = stopAtFirstError;
+        this.context = context;
+    }
+
+    /**
+     * Visits each page in the given range once, giving it to all the checks which are not yet
+     * conclusive, and stops as soon as all checks are conclusive, or any check has found an
+     * error when {@link #PageChecks(List, boolean, ValidationContext) stopping at the first error},
+     * or when {@link #stop() stopped}.
+     *
+     * @param fromPageIndex the index of the first page to check
+     * @param toPageIndex the index after the last page to check, or {@link Integer#MAX_VALUE}
+     *                    to check all pages until the end of the document
+     * @throws java.util.concurrent.CancellationException if the validation is cancelled, or exceeds its budget
+     */
+    void checkPages(PDDocument document, int fromPageIndex, int toPageIndex) throws IOException {
+        for (PageCheck pageCheck : checks) {
+            pageCheck.startDocument(document);
+        }
+        int pageIndex = 0;
+        for (PDPage page : document.getPages()) {
+            if (pageIndex >= toPageIndex) {
+                break;
+            }
+            if (pageIndex >= fromPageIndex) {
+                if (stopped) {
+                    break;
+                }
+                context.checkpoint();
+                if (check(pageIndex, page)) {
+                    break;
+                }
+            }
+            pageIndex++;
+        }
+    }
+
+    /**
+     * @return {@code true} if checking more pages is not necessary after checking the page
+     */
+    private boolean check(int pageIndex, PDPage page) throws IOException {
+        PDRectangle cropBox = page.getCropBox();
+        ValidationMetrics.Recorder metrics = context.metrics;
+        if (metrics != null) {
+            metrics.pageChecked();
+        }
+        boolean allChecksConclusive = true;
+        for (PageCheck pageCheck : checks) {
+            if (!pageCheck.isConclusive()) {
+                Object event = ValidationEvents.pageCheckStarted();
+                if (metrics != null) {
+                    long start = System.nanoTime();
+                    pageCheck.check(pageIndex, page, cropBox);
+                    metrics.phase(pageCheck.phase(), System.nanoTime() - start);
+                } else {
+                    pageCheck.check(pageIndex, page, cropBox);
+                }
+                ValidationEvents.pageChecked(event, pageIndex, page, pageCheck);
+                if (stopAtFirstError && pageCheck.hasErrors()) {
+                    return true;
+                }
+                allChecksConclusive &= pageCheck.isConclusive();
+            }
+        }
+        return allChecksConclusive;
+    }
+
+    /**
+     * Stop checking pages, from any thread, when the outcome of these checks is no longer needed.
+     * The page being checked is completed, but no more pages are checked.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * @return {@code true} if checking more pages is not necessary
+     */
+    boolean isConclusive() {
+        boolean allChecksConclusive = true;
+        for (PageCheck pageCheck : checks) {
+            if (stopAtFirstError && pageCheck.hasErrors()) {
+                return true;
+            }
+            allChecksConclusive &= pageCheck.isConclusive();
+        }
+        return allChecksConclusive;
+    }
+
+    /**
+     * Merge in the outcome of checks of the same kinds, performed on the pages following
+     * the pages checked by this instance.
+     */
+    void merge(PageChecks followingPages) {
+        for (int i = 0; i < checks.size(); i++) {
+            checks.get(i).merge(followingPages.checks.get(i));
+        }
+    }
+
+    void addErrors(List<PdfValidationError> errors) {
+        for (PageCheck pageCheck : checks) {
+            pageCheck.addErrors(errors);
+        }
+    }
+
+}
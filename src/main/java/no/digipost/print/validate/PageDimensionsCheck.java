@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.Bleed;
+import no.digipost.print.validate.PdfValidationSettings.PaperFormat;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static no.digipost.print.validate.PdfValidationError.UNSUPPORTED_DIMENSIONS;
+import static no.digipost.print.validate.PdfValidator.pointsTomm;
+
+/**
+ * Verifies that all pages have the size of the {@link PaperFormat}, in portrait or landscape, within the tolerance of the {@link Bleed}.
+ */
+final class PageDimensionsCheck implements PageCheck {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PageDimensionsCheck.class);
+
+    private final PageGeometry geometry;
+    private boolean documentHasInvalidDimensions = false;
+
+    PageDimensionsCheck(PageGeometry geometry) {
+        this.geometry = geometry;
+    }
+
+    @Override
+    public ValidationMetrics.Phase phase() {
+        return ValidationMetrics.Phase.DIMENSIONS;
+    }
+
+    @Override
+    public void check(int pageIndex, PDPage page, PDRectangle cropBox) {
+        documentHasInvalidDimensions |= hasInvalidDimensions(cropBox);
+    }
+
+    @Override
+    public boolean isConclusive() {
+        return documentHasInvalidDimensions;
+    }
+
+    @Override
+    public boolean hasErrors() {
+        return documentHasInvalidDimensions;
+    }
+
+    @Override
+    public void merge(PageCheck followingPages) {
+        documentHasInvalidDimensions |= ((PageDimensionsCheck) followingPages).documentHasInvalidDimensions;
+    }
+
+    @Override
+    public void addErrors(List<PdfValidationError> errors) {
+        if (documentHasInvalidDimensions) {
+            errors.add(UNSUPPORTED_DIMENSIONS);
+        }
+    }
+
+    private boolean hasInvalidDimensions(PDRectangle cropBox) {
+        if (!geometry.isSupported(cropBox)) {
+            if (LOG.isDebugEnabled()) {
+                PaperFormat paperFormat = geometry.paperFormat;
+                Bleed bleed = geometry.bleed;
+                LOG.debug("One or more pages in the PDF has invalid dimensions.  Valid dimensions are width {} mm and height {} mm, alt " +
+                        "width {} mm og height {} mm with {} mm lower flexibility and {} upper flexibility. "
+                        + "Actual dimensions are width: {} mm and height: {} mm.",
+                        new Object[] { paperFormat.widthInMM, paperFormat.heightInMM, paperFormat.heightInMM, paperFormat.widthInMM, bleed.negativeBleedInMM,
+                                bleed.positiveBleedInMM, pointsTomm(cropBox.getWidth()), pointsTomm(cropBox.getHeight()) });
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+import static no.digipost.print.validate.PdfValidationError.REFERENCES_INVALID_FONT;
+
+/**
+ * Verifies that the fonts used on the pages are either embedded, or supported for print.
+ * Reports an error for each page referring to unsupported fonts.
+ */
+final class PageFontsCheck implements PageCheck {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PageFontsCheck.class);
+
+    private final PdfFontValidator.DocumentFonts documentFonts;
+    private int pagesWithInvalidFonts = 0;
+
+    PageFontsCheck(PdfFontValidator fontValidator, FontNameMatcher supportedFonts, boolean inspectFontPrograms, ValidationContext context) {
+        this.documentFonts = fontValidator.documentFonts(supportedFonts, inspectFontPrograms, context.metrics);
+    }
+
+    @Override
+    public ValidationMetrics.Phase phase() {
+        return ValidationMetrics.Phase.FONTS;
+    }
+
+    @Override
+    public void check(int pageIndex, PDPage page, PDRectangle cropBox) throws IOException {
+        List<String> nonSupportedFonts = documentFonts.findNonSupportedFonts(page);
+        if (!nonSupportedFonts.isEmpty()) {
+            pagesWithInvalidFonts++;
+            if (LOG.isInfoEnabled()) {
+                LOG.debug("The PDF has references to invalid fonts: [{}]", String.join(", ", nonSupportedFonts));
+            }
+        }
+    }
+
+    @Override
+    public boolean isConclusive() {
+        return false;
+    }
+
+    @Override
+    public boolean hasErrors() {
+        return pagesWithInvalidFonts > 0;
+    }
+
+    @Override
+    public void merge(PageCheck followingPages) {
+        pagesWithInvalidFonts += ((PageFontsCheck) followingPages).pagesWithInvalidFonts;
+    }
+
+    @Override
+    public void addErrors(List<PdfValidationError> errors) {
+        for (int i = 0; i < pagesWithInvalidFonts; i++) {
+            errors.add(REFERENCES_INVALID_FONT);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.Bleed;
+import no.digipost.print.validate.PdfValidationSettings.PaperFormat;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.awt.geom.Rectangle2D;
+
+import static no.digipost.print.validate.PdfValidator.BARCODE_AREA_HEIGHT_MM;
+import static no.digipost.print.validate.PdfValidator.BARCODE_AREA_WIDTH_MM;
+import static no.digipost.print.validate.PdfValidator.BARCODE_AREA_X_POS_MM;
+import static no.digipost.print.validate.PdfValidator.BARCODE_AREA_Y_POS_MM;
+import static no.digipost.print.validate.PdfValidator.MM_TO_POINTS;
+import static no.digipost.print.validate.PdfValidator.mmToPoints;
+
+/**
+ * The supported page sizes and the barcode area of a {@link PaperFormat} with a {@link Bleed}, computed once
+ * so each page is checked with a few comparisons. A page size is supported if it is within the bleed of the
+ * paper format when rounded to whole millimeters, in portrait or landscape. Instances are immutable, and the
+ * rectangles of the barcode area must not be modified.
+ */
+final class PageGeometry {
+
+    final PaperFormat paperFormat;
+    final Bleed bleed;
+
+    // the bounds of a side of a page in millimeters, before rounding to whole millimeters:
+    // min inclusive and max exclusive
+    private final double minWidth;
+    private final double maxWidth;
+    private final double minHeight;
+    private final double maxHeight;
+
+    private final Rectangle2D portraitBarcodeArea;
+
+    /**
+     * The barcode area of landscape pages, which is placed from the top of the page, by the height of
+     * the page in whole millimeters from the lowest supported height.
+     */
+    private final Rectangle2D[] landscapeBarcodeAreas;
+
+    PageGeometry(PaperFormat paperFormat, Bleed bleed) {
+        this.paperFormat = paperFormat;
+        this.bleed = bleed;
+        this.minWidth = paperFormat.widthInMM - bleed.negativeBleedInMM - 0.5;
+        this.maxWidth = paperFormat.widthInMM + bleed.positiveBleedInMM + 0.5;
+        this.minHeight = paperFormat.heightInMM - bleed.negativeBleedInMM - 0.5;
+        this.maxHeight = paperFormat.heightInMM + bleed.positiveBleedInMM + 0.5;
+
+        this.portraitBarcodeArea = new Rectangle2D.Double(mmToPoints(BARCODE_AREA_X_POS_MM), mmToPoints(BARCODE_AREA_Y_POS_MM),
+                mmToPoints(BARCODE_AREA_WIDTH_MM), mmToPoints(BARCODE_AREA_HEIGHT_MM));
+        int lowestLandscapeHeight = paperFormat.widthInMM - bleed.negativeBleedInMM;
+        this.landscapeBarcodeAreas = new Rectangle2D[Math.max(bleed.negativeBleedInMM + bleed.positiveBleedInMM + 1, 0)];
+        for (int i = 0; i < landscapeBarcodeAreas.length; i++) {
+            landscapeBarcodeAreas[i] = new Rectangle2D.Double(mmToPoints(BARCODE_AREA_Y_POS_MM), mmToPoints(lowestLandscapeHeight + i - BARCODE_AREA_WIDTH_MM),
+                    mmToPoints(BARCODE_AREA_HEIGHT_MM), mmToPoints(BARCODE_AREA_WIDTH_MM));
+        }
+    }
+
+    boolean isSupported(PDRectangle cropBox) {
+        double width = cropBox.getWidth() / MM_TO_POINTS;
+        double height = cropBox.getHeight() / MM_TO_POINTS;
+        return isPortrait(width, height) || isLandscape(width, height);
+    }
+
+    /**
+     * @return the area of the page where the barcode is printed, which is the area for portrait pages
+     *         unless the page is a supported landscape page
+     */
+    Rectangle2D barcodeArea(PDRectangle cropBox) {
+        double width = cropBox.getWidth() / MM_TO_POINTS;
+        double height = cropBox.getHeight() / MM_TO_POINTS;
+        if (isLandscape(width, height)) {
+            return landscapeBarcodeAreas[(int) (Math.round(height) - (paperFormat.widthInMM - bleed.negativeBleedInMM))];
+        }
+        return portraitBarcodeArea;
+    }
+
+    private boolean isPortrait(double width, double height) {
+        return width >= minWidth && width < maxWidth && height >= minHeight && height < maxHeight;
+    }
+
+    private boolean isLandscape(double width, double height) {
+        return isPortrait(height, width);
+    }
+
+}
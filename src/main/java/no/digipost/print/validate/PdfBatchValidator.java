@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Validates a batch of documents concurrently on a given executor, with a limit on how many documents are
+ * validated at the same time, and on the total size of the documents being validated. Documents are only
+ * taken from the batch when there is capacity to validate them, so a batch may be a lazily produced
+ * {@link java.util.stream.Stream#iterator() stream} of any length, and documents supplied as
+ * {@link Input#of(long, Supplier) suppliers} are not read into memory before they are validated.
+ * <p>
+ * The executor may be a fixed thread pool, a {@link java.util.concurrent.ForkJoinPool}, or, on JDK 21 and later,
+ * {@code Executors.newVirtualThreadPerTaskExecutor()}, as the limits of the batch apply regardless of how many
+ * threads the executor has. The results are handed over on the thread running the batch.
+ */
+public final class PdfBatchValidator {
+
+    private final PdfValidator validator;
+    private final Executor executor;
+    private final int parallelism;
+    private final long maxBytesInFlight;
+
+    /**
+     * @param validator the validator to validate each document with
+     * @param executor the executor to validate the documents on. It is not shut down by the batch validator.
+     * @param parallelism the maximum number of documents to validate at the same time
+     * @param maxBytesInFlight the maximum total size of the documents to validate at the same time. A document
+     *                         larger than this is validated alone.
+     */
+    public PdfBatchValidator(PdfValidator validator, Executor executor, int parallelism, long maxBytesInFlight) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+        }
+        if (maxBytesInFlight < 1) {
+            throw new IllegalArgumentException("maxBytesInFlight must be at least 1, was " + maxBytesInFlight);
+        }
+        this.validator = validator;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.maxBytesInFlight = maxBytesInFlight;
+    }
+
+    /**
+     * Validates the documents, and returns the results in the same order as the documents.
+     */
+    public List<PdfValidationResult> validateAll(Iterator<Input> documents, PdfValidationSettings settings) {
+        List<PdfValidationResult> results = new ArrayList<>();
+        Iterator<Integer> indexes = new Iterator<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return documents.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                results.add(null);
+                return results.size() - 1;
+            }
+        };
+        validate(indexes, index -> documents.next(), settings, results::set);
+        return results;
+    }
+
+    /**
+     * Validates the documents of the given items, and passes each item with its result to {@code onResult}
+     * as soon as the validation completes, on the thread invoking this method. The method returns when all the
+     * documents have been validated.
+     * <p>
+     * If getting a document, validating it, or {@code onResult} fails, no more documents are taken from the batch,
+     * and the failure is thrown when the documents already being validated have completed. Those documents are
+     * still passed to {@code onResult}, so the items passed to it are exactly those whose documents were validated. An {@link IOException},
+     * e.g. from reading a file, is thrown as an {@link UncheckedIOException}.
+     *
+     * @param items the items to validate, e.g. letters, each having a document
+     * @param document gets the document of an item
+     * @param settings the settings to validate each document with
+     * @param onResult receives each item with the result of validating its document
+     */
+    public <T> void validate(Iterator<T> items, Function<? super T, Input> document, PdfValidationSettings settings,
+                             BiConsumer<? super T, PdfValidationResult> onResult) {
+
+        BlockingQueue<Completion<T>> completions = new LinkedBlockingQueue<>();
+        int inFlight = 0;
+        long bytesInFlight = 0;
+        RuntimeException failure = null;
+        T nextItem = null;
+        Input nextInput = null;
+        long nextSize = 0;
+        while (true) {
+            if (nextInput == null && failure == null && items.hasNext()) {
+                try {
+                    nextItem = items.next();
+                    nextInput = document.apply(nextItem);
+                    nextSize = nextInput.sizeInBytes();
+                } catch (IOException e) {
+                    failure = new UncheckedIOException(e.getMessage(), e);
+                    nextInput = null;
+                } catch (RuntimeException e) {
+                    failure = e;
+                    nextInput = null;
+                }
+            }
+            if (nextInput != null && inFlight < parallelism && (inFlight == 0 || bytesInFlight + nextSize <= maxBytesInFlight)) {
+                try {
+                    submit(nextItem, nextInput, nextSize, settings, completions);
+                    inFlight++;
+                    bytesInFlight += nextSize;
+                } catch (RuntimeException rejected) {
+                    failure = rejected;
+                }
+                nextItem = null;
+                nextInput = null;
+                continue;
+            }
+            if (inFlight == 0) {
+                break;
+            }
+
+            Completion<T> completion;
+            try {
+                completion = completions.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                CancellationException interrupted = new CancellationException("Interrupted while validating a batch of documents");
+                interrupted.initCause(e);
+                throw interrupted;
+            }
+            inFlight--;
+            bytesInFlight -= completion.sizeInBytes;
+            if (completion.failure != null) {
+                if (failure == null) {
+                    failure = completion.failure;
+                }
+                nextItem = null;
+                nextInput = null;
+            } else {
+                try {
+                    onResult.accept(completion.item, completion.result);
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                    nextItem = null;
+                    nextInput = null;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private <T> void submit(T item, Input input, long sizeInBytes, PdfValidationSettings settings, BlockingQueue<Completion<T>> completions) {
+        executor.execute(() -> {
+            try {
+                completions.add(new Completion<>(item, sizeInBytes, input.validation.validate(validator, settings), null));
+            } catch (IOException e) {
+                completions.add(new Completion<>(item, sizeInBytes, null, new UncheckedIOException(e.getMessage(), e)));
+            } catch (RuntimeException e) {
+                completions.add(new Completion<>(item, sizeInBytes, null, e));
+            } catch (Error e) {
+                completions.add(new Completion<>(item, sizeInBytes, null, new IllegalStateException(e.getMessage(), e)));
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * A document to validate as part of a batch.
+     */
+    public static final class Input {
+
+        public static Input of(byte[] pdfContent) {
+            return new Input(() -> pdfContent.length, (validator, settings) -> validator.validate(pdfContent, settings));
+        }
+
+        public static Input of(ByteBuffer pdfContent) {
+            return new Input(pdfContent::remaining, (validator, settings) -> validator.validate(pdfContent, settings));
+        }
+
+        public static Input of(Path pdfFile) {
+            return new Input(() -> Files.size(pdfFile), (validator, settings) -> validator.validate(pdfFile, settings));
+        }
+
+        /**
+         * A document which is only read when there is capacity to validate it.
+         *
+         * @param sizeInBytes the size of the document, counted against the maximum bytes in flight
+         * @param pdfContent reads the document
+         */
+        public static Input of(long sizeInBytes, Supplier<byte[]> pdfContent) {
+            return new Input(() -> sizeInBytes, (validator, settings) -> validator.validate(pdfContent.get(), settings));
+        }
+
+        private final SizeInBytes sizeInBytes;
+        private final Validation validation;
+
+        private Input(SizeInBytes sizeInBytes, Validation validation) {
+            this.sizeInBytes = sizeInBytes;
+            this.validation = validation;
+        }
+
+        long sizeInBytes() throws IOException {
+            return sizeInBytes.get();
+        }
+
+        @FunctionalInterface
+        private interface SizeInBytes {
+            long get() throws IOException;
+        }
+
+        @FunctionalInterface
+        private interface Validation {
+            PdfValidationResult validate(PdfValidator validator, PdfValidationSettings settings) throws IOException;
+        }
+    }
+
+    private static final class Completion<T> {
+        final T item;
+        final long sizeInBytes;
+        final PdfValidationResult result;
+        final RuntimeException failure;
+
+        Completion(T item, long sizeInBytes, PdfValidationResult result, RuntimeException failure) {
+            this.item = item;
+            this.sizeInBytes = sizeInBytes;
+            this.result = result;
+            this.failure = failure;
+        }
+    }
+
+}
@@ -15,6 +15,10 @@
  */
 package no.digipost.print.validate;
 
+import no.digipost.print.validate.FontVerdictCache.FontSignature;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDResources;
@@ -24,93 +28,214 @@ import org.apache.pdfbox.pdmodel.font.PDType0Font;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import static java.util.Arrays.asList;
-import static java.util.Collections.emptySet;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.newSetFromMap;
 import static java.util.Collections.unmodifiableList;
-import static java.util.Collections.unmodifiableSet;
-import static java.util.stream.Collectors.collectingAndThen;
-import static java.util.stream.Collectors.toSet;
-import static java.util.stream.Stream.concat;
 
 class PdfFontValidator {
 
-    // Standard Type 1 Fonts (Standard 14 Fonts) -
-    // http://en.wikipedia.org/wiki/Portable_Document_Format#Fonts
-    // Times (v3) (in regular, italic, bold, and bold italic)
-    // Courier (final in regular, oblique, bold and bold oblique)
-    // Helvetica (v3) (in regular, oblique, bold and bold oblique)
-    // Symbol
-    // Zapf Dingbats
-    private static final Set<String> STANDARD_14_FONTS = unmodifiableSet(new HashSet<>(asList("TIMES", "COURIER", "HELVETICA", "SYMBOL", "ZAPFDINGBATS")));
-
-    private static final Set<String> WHITE_LISTED_FONTS = unmodifiableSet(new HashSet<>(asList("ARIAL")));
-
-    private static final Set<String> SUPPORTED_FONTS = concat(STANDARD_14_FONTS.stream(), WHITE_LISTED_FONTS.stream()).collect(collectingAndThen(toSet(), Collections::unmodifiableSet));
-
-    public Collection<PDFont> getPageFonts(PDPage page) throws IOException {
-        PDResources resources = page.getResources();
-        if (resources != null) {
-            Set<PDFont> fonts = new LinkedHashSet<>();
-            for (COSName fontName : resources.getFontNames()) {
-                fonts.add(resources.getFont(fontName));
-            }
-            return fonts;
+    private final FontVerdictCache verdictCache;
+
+    /**
+     * @param verdictCache the cache of fonts classified by this and other validators, or {@code null}
+     *                     to classify the fonts of each document anew
+     */
+    PdfFontValidator(FontVerdictCache verdictCache) {
+        this.verdictCache = verdictCache;
+    }
+
+    private boolean erAkseptabelForPrint(PDFont font, FontNameMatcher supportedFonts, ValidationMetrics.Recorder metrics) {
+        if (verdictCache == null) {
+            return classify(font, supportedFonts, metrics);
         }
-        return emptySet();
+        PDFontDescriptor fontDescriptor = font.getFontDescriptor();
+        FontSignature signature = fontDescriptor != null
+                ? new FontSignature(fontDescriptor.getFontName(), font.getSubType(), true, !harIkkeEmbeddedFont(fontDescriptor), font.isDamaged(), supportedFonts)
+                : new FontSignature(font.getName(), font.getSubType(), false, false, font.isDamaged(), supportedFonts);
+        Boolean supported = verdictCache.get(signature);
+        if (supported == null) {
+            supported = classify(font, supportedFonts, metrics);
+            verdictCache.put(signature, supported);
+        } else if (metrics != null) {
+            metrics.fontCacheHits(1);
+        }
+        return supported;
     }
 
-    public List<PDFont> findNonSupportedFonts(Iterable<PDFont> fonter) {
-        List<PDFont> nonSupported = new ArrayList<>();
-        for (PDFont font : fonter) {
-            if (font.isDamaged()) {
-                nonSupported.add(font);
-            } else {
-                PDFontDescriptor fontDescriptor = font.getFontDescriptor();
-                if (fontDescriptor != null) {
-                    if (!erFontDescriptorAkseptabelForPrint(fontDescriptor)) {
-                        nonSupported.add(font);
-                    }
-                } else {
-                    if (!(font instanceof PDType0Font)) {
-                        if (!erAkseptabelForPrint(font.getName())) {
-                            nonSupported.add(font);
-                        }
-                    }
-                }
-            }
+    private boolean classify(PDFont font, FontNameMatcher supportedFonts, ValidationMetrics.Recorder metrics) {
+        if (metrics != null) {
+            metrics.fontInspected();
+        }
+        if (font.isDamaged()) {
+            return false;
+        }
+        PDFontDescriptor fontDescriptor = font.getFontDescriptor();
+        if (fontDescriptor != null) {
+            return erFontDescriptorAkseptabelForPrint(fontDescriptor, supportedFonts);
+        } else {
+            return font instanceof PDType0Font || supportedFonts.matches(font.getName());
         }
-        return unmodifiableList(nonSupported);
     }
 
-    private boolean erFontDescriptorAkseptabelForPrint(PDFontDescriptor fontDescriptor) {
-        if (harIkkeEmbeddedFont(fontDescriptor)) {
-            return erAkseptabelForPrint(fontDescriptor.getFontName());
+    /**
+     * Classifies a font from its font dictionary only, as {@link #classify(PDFont, FontNameMatcher, ValidationMetrics.Recorder)}
+     * does from the loaded font, except that a damaged font program is not detected, as font programs are not parsed.
+     */
+    private boolean classifyDictionary(COSDictionary font, FontNameMatcher supportedFonts, ValidationMetrics.Recorder metrics) {
+        if (metrics != null) {
+            metrics.fontInspected();
+        }
+        COSDictionary fontDescriptor = fontDescriptor(font);
+        if (fontDescriptor != null) {
+            return isEmbedded(fontDescriptor) || supportedFonts.matches(fontDescriptor.getNameAsString(COSName.FONT_NAME));
         } else {
-            return true;
+            return COSName.TYPE0.equals(font.getCOSName(COSName.SUBTYPE)) || supportedFonts.matches(fontName(font));
         }
     }
 
+    private boolean erDictionaryAkseptabelForPrint(COSDictionary font, FontNameMatcher supportedFonts, ValidationMetrics.Recorder metrics) {
+        if (verdictCache == null) {
+            return classifyDictionary(font, supportedFonts, metrics);
+        }
+        COSDictionary fontDescriptor = fontDescriptor(font);
+        String subType = font.getNameAsString(COSName.SUBTYPE);
+        FontSignature signature = fontDescriptor != null
+                ? new FontSignature(fontDescriptor.getNameAsString(COSName.FONT_NAME), subType, true, isEmbedded(fontDescriptor), false, supportedFonts)
+                : new FontSignature(fontName(font), subType, false, false, false, supportedFonts);
+        Boolean supported = verdictCache.get(signature);
+        if (supported == null) {
+            supported = classifyDictionary(font, supportedFonts, metrics);
+            verdictCache.put(signature, supported);
+        } else if (metrics != null) {
+            metrics.fontCacheHits(1);
+        }
+        return supported;
+    }
 
-    private static final String DASH_AND_WHITESPACE = "[\\-\\s]+";
+    /**
+     * @return the font descriptor of the font, which for a Type 0 font is the descriptor of its descendant font
+     */
+    private static COSDictionary fontDescriptor(COSDictionary font) {
+        if (COSName.TYPE0.equals(font.getCOSName(COSName.SUBTYPE))) {
+            COSArray descendantFonts = font.getCOSArray(COSName.DESCENDANT_FONTS);
+            COSBase descendantFont = descendantFonts != null && descendantFonts.size() > 0 ? descendantFonts.getObject(0) : null;
+            return descendantFont instanceof COSDictionary ? ((COSDictionary) descendantFont).getCOSDictionary(COSName.FONT_DESC) : null;
+        }
+        return font.getCOSDictionary(COSName.FONT_DESC);
+    }
 
-    private boolean erAkseptabelForPrint(String fontnavn) {
-        if (fontnavn == null) {
-            return false;
+    private static String fontName(COSDictionary font) {
+        return COSName.TYPE3.equals(font.getCOSName(COSName.SUBTYPE)) ? font.getNameAsString(COSName.NAME) : font.getNameAsString(COSName.BASE_FONT);
+    }
+
+    private static boolean isEmbedded(COSDictionary fontDescriptor) {
+        return fontDescriptor.containsKey(COSName.FONT_FILE) || fontDescriptor.containsKey(COSName.FONT_FILE2) || fontDescriptor.containsKey(COSName.FONT_FILE3);
+    }
+
+    /**
+     * @param supportedFonts matches the names of the fonts which may be used without being embedded
+     * @param inspectFontPrograms {@code true} to load the fonts to classify them, or {@code false} to classify them
+     *                            from their font dictionaries only
+     * @param metrics collects the number of fonts inspected, or {@code null}
+     * @return a cache for finding the non-supported fonts of the pages of one document
+     */
+    DocumentFonts documentFonts(FontNameMatcher supportedFonts, boolean inspectFontPrograms, ValidationMetrics.Recorder metrics) {
+        return new DocumentFonts(supportedFonts, inspectFontPrograms, metrics);
+    }
+
+    /**
+     * Finds the non-supported fonts of the pages of one document, where each distinct font
+     * is classified only once, and pages sharing the same font resources are only inspected once.
+     * Fonts and font resources are identified by their COS objects, which are only parsed once
+     * per document. An instance must only be used for one document, and not concurrently.
+     */
+    final class DocumentFonts {
+
+        private final Map<COSDictionary, List<String>> nonSupportedFontsByFontResources = new IdentityHashMap<>();
+        private final Map<COSDictionary, String> nonSupportedFonts = new IdentityHashMap<>();
+        private final Set<COSDictionary> supportedFonts = newSetFromMap(new IdentityHashMap<>());
+        private final FontNameMatcher supportedFontNames;
+        private final boolean inspectFontPrograms;
+        private final ValidationMetrics.Recorder metrics;
+
+        private DocumentFonts(FontNameMatcher supportedFontNames, boolean inspectFontPrograms, ValidationMetrics.Recorder metrics) {
+            this.supportedFontNames = supportedFontNames;
+            this.inspectFontPrograms = inspectFontPrograms;
+            this.metrics = metrics;
         }
-        String normalisertFontnavn = fontnavn.replaceAll(DASH_AND_WHITESPACE, "").toUpperCase();
-        for (String supportertFontnavn : SUPPORTED_FONTS) {
-            if (normalisertFontnavn.contains(supportertFontnavn)) {
-                return true;
+
+        /**
+         * @return descriptions of the non-supported fonts of the page
+         */
+        List<String> findNonSupportedFonts(PDPage page) throws IOException {
+            PDResources resources = page.getResources();
+            COSDictionary fontResources = resources != null ? resources.getCOSObject().getCOSDictionary(COSName.FONT) : null;
+            if (fontResources == null) {
+                return emptyList();
+            }
+            List<String> knownNonSupported = nonSupportedFontsByFontResources.get(fontResources);
+            if (knownNonSupported != null) {
+                if (metrics != null) {
+                    metrics.fontCacheHits(fontResources.size());
+                }
+                return knownNonSupported;
+            }
+
+            Set<String> nonSupported = new LinkedHashSet<>();
+            for (COSName fontName : fontResources.keySet()) {
+                COSBase fontObject = fontResources.getDictionaryObject(fontName);
+                COSDictionary fontDictionary = fontObject instanceof COSDictionary ? (COSDictionary) fontObject : null;
+                if (fontDictionary != null) {
+                    String knownNonSupportedFont = nonSupportedFonts.get(fontDictionary);
+                    if (knownNonSupportedFont != null || supportedFonts.contains(fontDictionary)) {
+                        if (knownNonSupportedFont != null) {
+                            nonSupported.add(knownNonSupportedFont);
+                        }
+                        if (metrics != null) {
+                            metrics.fontCacheHits(1);
+                        }
+                        continue;
+                    }
+                }
+                String nonSupportedFont;
+                if (inspectFontPrograms) {
+                    PDFont font = resources.getFont(fontName);
+                    nonSupportedFont = erAkseptabelForPrint(font, supportedFontNames, metrics) ? null : font.getSubType() + " '" + font.getName() + "'";
+                } else if (fontDictionary != null) {
+                    nonSupportedFont = erDictionaryAkseptabelForPrint(fontDictionary, supportedFontNames, metrics)
+                            ? null : fontDictionary.getNameAsString(COSName.SUBTYPE) + " '" + fontName(fontDictionary) + "'";
+                } else {
+                    continue;
+                }
+                if (nonSupportedFont == null) {
+                    if (fontDictionary != null) {
+                        supportedFonts.add(fontDictionary);
+                    }
+                } else {
+                    nonSupported.add(nonSupportedFont);
+                    if (fontDictionary != null) {
+                        nonSupportedFonts.put(fontDictionary, nonSupportedFont);
+                    }
+                }
             }
+            List<String> nonSupportedOnPage = nonSupported.isEmpty() ? emptyList() : unmodifiableList(new ArrayList<>(nonSupported));
+            nonSupportedFontsByFontResources.put(fontResources, nonSupportedOnPage);
+            return nonSupportedOnPage;
+        }
+    }
+
+    private boolean erFontDescriptorAkseptabelForPrint(PDFontDescriptor fontDescriptor, FontNameMatcher supportedFonts) {
+        if (harIkkeEmbeddedFont(fontDescriptor)) {
+            return supportedFonts.matches(fontDescriptor.getFontName());
+        } else {
+            return true;
         }
-        return false;
     }
 
     private boolean harIkkeEmbeddedFont(PDFontDescriptor fontDescriptor) {
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+import java.io.IOException;
+
+/**
+ * Opens a PDF for reading. Each invocation of {@link #open()} gives a new independent
+ * {@link RandomAccessRead} of the same content, which enables parsing the same PDF
+ * into separate documents.
+ */
+@FunctionalInterface
+interface PdfSource {
+
+    RandomAccessRead open() throws IOException;
+
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * A quick look at a PDF before it is parsed by PDFBox, reading only the header, the last cross-reference
+ * table and its trailer, and the catalog and page tree root the trailer refers to, to find the number of pages.
+ * This is enough to reject some documents which can not be printed, without the cost of loading the
+ * document, which grows with the number of objects in it.
+ * <p>
+ * Only the simplest documents are triaged: a single classic cross-reference table, with the
+ * {@code /Count} of the page tree root given directly. Incrementally updated documents, cross-reference streams,
+ * and any irregularity leave the information {@link #UNKNOWN_NUMBER_OF_PAGES unknown}, and the full parsing
+ * with all the leniency of PDFBox decides.
+ */
+final class PdfTriage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PdfTriage.class);
+
+    static final float UNKNOWN_VERSION = -1;
+    static final int UNKNOWN_NUMBER_OF_PAGES = -1;
+
+    private static final int STARTXREF_SEARCH_LENGTH = 2048;
+    private static final int ENTRY_LENGTH = 20;
+
+    /**
+     * The version in the header of the document, or {@link #UNKNOWN_VERSION}.
+     */
+    final float version;
+
+    /**
+     * {@code true} if the trailer refers to an encryption dictionary, {@code false} if it does not, or this is unknown.
+     */
+    final boolean encrypted;
+
+    /**
+     * The number of pages of the document, or {@link #UNKNOWN_NUMBER_OF_PAGES}. Always unknown for encrypted documents.
+     */
+    final int numberOfPages;
+
+    private PdfTriage(float version, boolean encrypted, int numberOfPages) {
+        this.version = version;
+        this.encrypted = encrypted;
+        this.numberOfPages = numberOfPages;
+    }
+
+    /**
+     * Never fails, but leaves the information which can not be determined unknown.
+     *
+     * @param pdf the PDF to read. Its position is reset to the start afterwards.
+     */
+    static PdfTriage of(RandomAccessRead pdf) {
+        float version = UNKNOWN_VERSION;
+        boolean encrypted = false;
+        int numberOfPages = UNKNOWN_NUMBER_OF_PAGES;
+        try {
+            version = headerVersion(pdf);
+            CrossReferenceTable table = CrossReferenceTable.read(new Lexer(pdf), startxref(pdf));
+            encrypted = table.trailer.containsKey("Encrypt");
+            if (!encrypted) {
+                numberOfPages = table.numberOfPages();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Triage of the PDF was inconclusive. ({}: '{}')", e.getClass().getSimpleName(), e.getMessage());
+        }
+        try {
+            pdf.seek(0);
+        } catch (IOException e) {
+            LOG.debug("Unable to reset the PDF after triage", e);
+        }
+        return new PdfTriage(version, encrypted, numberOfPages);
+    }
+
+    /**
+     * Only a header at the very start, on the form {@code %PDF-d.d}, is accepted, as the
+     * version is then read the same way by PDFBox.
+     */
+    private static float headerVersion(RandomAccessRead pdf) throws IOException {
+        byte[] header = new byte[8];
+        pdf.seek(0);
+        if (readFully(pdf, header) && new String(header, 0, 5, US_ASCII).equals("%PDF-")
+                && isDigit(header[5]) && header[6] == '.' && isDigit(header[7])) {
+            return Float.parseFloat(new String(header, 5, 3, US_ASCII));
+        }
+        return UNKNOWN_VERSION;
+    }
+
+    private static long startxref(RandomAccessRead pdf) throws IOException {
+        int tailLength = (int) Math.min(pdf.length(), STARTXREF_SEARCH_LENGTH);
+        byte[] tail = new byte[tailLength];
+        pdf.seek(pdf.length() - tailLength);
+        if (!readFully(pdf, tail)) {
+            throw new IOException("Unable to read the end of the file");
+        }
+        int startxref = new String(tail, US_ASCII).lastIndexOf("startxref");
+        if (startxref == -1) {
+            throw new IOException("No startxref");
+        }
+        Lexer lexer = new Lexer(pdf);
+        lexer.seek(pdf.length() - tailLength + startxref + "startxref".length());
+        return lexer.readInteger();
+    }
+
+    private static final class CrossReferenceTable {
+
+        final Map<String, Object> trailer;
+        private final Lexer lexer;
+        // the first object number, number of entries and offset of the entries of each subsection
+        private final long[] subsections;
+
+        private CrossReferenceTable(Map<String, Object> trailer, Lexer lexer, long[] subsections) {
+            this.trailer = trailer;
+            this.lexer = lexer;
+            this.subsections = subsections;
+        }
+
+        static CrossReferenceTable read(Lexer lexer, long offset) throws IOException {
+            lexer.seek(offset);
+            lexer.skipWhitespace();
+            if (lexer.peek() != 'x') {
+                throw new IOException("Cross-reference streams are left to the full parsing, at " + offset);
+            }
+            lexer.expectKeyword("xref");
+            long[] subsections = new long[0];
+            for (lexer.skipWhitespace(); isDigit(lexer.peek()); lexer.skipWhitespace()) {
+                long firstObjectNumber = lexer.readInteger();
+                long count = lexer.readInteger();
+                lexer.skipWhitespace();
+                long entriesOffset = lexer.position();
+                subsections = Arrays.copyOf(subsections, subsections.length + 3);
+                subsections[subsections.length - 3] = firstObjectNumber;
+                subsections[subsections.length - 2] = count;
+                subsections[subsections.length - 1] = entriesOffset;
+                if (count > 0) {
+                    // verifies that the entries are of the standard length
+                    readEntry(lexer, entriesOffset);
+                }
+                lexer.seek(entriesOffset + count * ENTRY_LENGTH);
+            }
+            lexer.expectKeyword("trailer");
+            Map<String, Object> trailer = dictionary(lexer.parseObject());
+            if (trailer.containsKey("Prev") || trailer.containsKey("XRefStm")) {
+                throw new IOException("Incrementally updated documents are left to the full parsing");
+            }
+            return new CrossReferenceTable(trailer, lexer, subsections);
+        }
+
+        int numberOfPages() throws IOException {
+            Map<String, Object> catalog = resolveDictionary(trailer.get("Root"));
+            Object count = resolveDictionary(catalog.get("Pages")).get("Count");
+            if (!(count instanceof Long)) {
+                throw new IOException("The page count is not given directly, but " + count);
+            }
+            long numberOfPages = (Long) count;
+            if (numberOfPages < 0 || numberOfPages > Integer.MAX_VALUE) {
+                throw new IOException("Invalid page count " + numberOfPages);
+            }
+            return (int) numberOfPages;
+        }
+
+        private Map<String, Object> resolveDictionary(Object value) throws IOException {
+            if (!(value instanceof Reference)) {
+                throw new IOException("Expected a reference, but got " + value);
+            }
+            Reference reference = (Reference) value;
+            lexer.seek(offsetOf(reference));
+            if (lexer.readInteger() != reference.number || lexer.readInteger() != reference.generation) {
+                throw new IOException("Expected " + reference + " at the offset given by the cross-reference table");
+            }
+            lexer.expectKeyword("obj");
+            return dictionary(lexer.parseObject());
+        }
+
+        private long offsetOf(Reference reference) throws IOException {
+            for (int i = 0; i < subsections.length; i += 3) {
+                long firstObjectNumber = subsections[i];
+                if (reference.number >= firstObjectNumber && reference.number < firstObjectNumber + subsections[i + 1]) {
+                    long entryOffset = subsections[i + 2] + (reference.number - firstObjectNumber) * ENTRY_LENGTH;
+                    byte[] entry = readEntry(lexer, entryOffset);
+                    if (entry[17] != 'n' || Integer.parseInt(new String(entry, 11, 5, US_ASCII)) != reference.generation) {
+                        throw new IOException("No object in use for " + reference);
+                    }
+                    return Long.parseLong(new String(entry, 0, 10, US_ASCII));
+                }
+            }
+            throw new IOException("No cross-reference entry for " + reference);
+        }
+
+        /**
+         * @return the entry at the offset, verified to be on the form {@code nnnnnnnnnn ggggg n} followed by an end of line
+         */
+        private static byte[] readEntry(Lexer lexer, long offset) throws IOException {
+            byte[] entry = lexer.readBytesAt(offset, ENTRY_LENGTH);
+            for (int i = 0; i < 10; i++) {
+                if (!isDigit(entry[i]) || (i < 5 && !isDigit(entry[11 + i]))) {
+                    throw new IOException("Invalid cross-reference entry at " + offset);
+                }
+            }
+            if (entry[10] != ' ' || entry[16] != ' ' || (entry[17] != 'n' && entry[17] != 'f') || !isWhitespace(entry[18])) {
+                throw new IOException("Invalid cross-reference entry at " + offset);
+            }
+            return entry;
+        }
+    }
+
+    private static final class Reference {
+        final long number;
+        final long generation;
+
+        Reference(long number, long generation) {
+            this.number = number;
+            this.generation = generation;
+        }
+
+        @Override
+        public String toString() {
+            return number + " " + generation + " R";
+        }
+    }
+
+    /**
+     * Reads the tokens and direct objects of PDF syntax. Dictionaries are given as {@link Map}s of their
+     * keys without the leading slash, integers as {@link Long}, and references as {@link Reference}. All other
+     * values, which are never needed by the triage, are skipped and given as {@link #OTHER}.
+     */
+    private static final class Lexer {
+        static final Object OTHER = new Object();
+        private static final int MAX_DEPTH = 32;
+
+        private final RandomAccessRead in;
+        private int depth = 0;
+
+        Lexer(RandomAccessRead in) {
+            this.in = in;
+        }
+
+        void seek(long position) throws IOException {
+            if (position < 0 || position > in.length()) {
+                throw new IOException("Invalid offset " + position);
+            }
+            in.seek(position);
+        }
+
+        long position() throws IOException {
+            return in.getPosition();
+        }
+
+        int peek() throws IOException {
+            return in.peek();
+        }
+
+        byte[] readBytesAt(long offset, int length) throws IOException {
+            seek(offset);
+            byte[] bytes = new byte[length];
+            if (!readFully(in, bytes)) {
+                throw new IOException("Unexpected end of file at " + offset);
+            }
+            return bytes;
+        }
+
+        Object parseObject() throws IOException {
+            skipWhitespace();
+            int c = in.peek();
+            switch (c) {
+                case '/':
+                    in.read();
+                    readName();
+                    return OTHER;
+                case '<':
+                    in.read();
+                    if (in.peek() == '<') {
+                        in.read();
+                        return readDictionary();
+                    }
+                    skipPast('>');
+                    return OTHER;
+                case '[':
+                    in.read();
+                    skipArray();
+                    return OTHER;
+                case '(':
+                    in.read();
+                    skipLiteralString();
+                    return OTHER;
+                default:
+                    if (isDigit(c) || c == '+' || c == '-' || c == '.') {
+                        return readNumberOrReference();
+                    } else if (c == -1 || isDelimiter(c)) {
+                        throw new IOException("Unexpected '" + (char) c + "' at " + in.getPosition());
+                    }
+                    readToken();
+                    return OTHER;
+            }
+        }
+
+        long readInteger() throws IOException {
+            skipWhitespace();
+            String token = readToken();
+            try {
+                return Long.parseLong(token);
+            } catch (NumberFormatException e) {
+                throw new IOException("Expected an integer, but got '" + token + "'");
+            }
+        }
+
+        void expectKeyword(String keyword) throws IOException {
+            skipWhitespace();
+            String token = readToken();
+            if (!token.equals(keyword)) {
+                throw new IOException("Expected " + keyword + ", but got '" + token + "'");
+            }
+        }
+
+        void skipWhitespace() throws IOException {
+            for (int c = in.peek(); isWhitespace(c) || c == '%'; c = in.peek()) {
+                if (c == '%') {
+                    for (c = in.read(); c != -1 && c != '\n' && c != '\r'; c = in.read()) {
+                        // skip comment
+                    }
+                } else {
+                    in.read();
+                }
+            }
+        }
+
+        private Map<String, Object> readDictionary() throws IOException {
+            enter();
+            Map<String, Object> dictionary = new HashMap<>();
+            for (skipWhitespace(); in.peek() != '>'; skipWhitespace()) {
+                if (in.read() != '/') {
+                    throw new IOException("Expected a name as dictionary key at " + (in.getPosition() - 1));
+                }
+                String key = readName();
+                dictionary.put(key, parseObject());
+            }
+            in.read();
+            if (in.read() != '>') {
+                throw new IOException("Expected end of dictionary at " + (in.getPosition() - 1));
+            }
+            depth--;
+            return dictionary;
+        }
+
+        private void skipArray() throws IOException {
+            enter();
+            for (skipWhitespace(); in.peek() != ']'; skipWhitespace()) {
+                parseObject();
+            }
+            in.read();
+            depth--;
+        }
+
+        private void enter() throws IOException {
+            if (++depth > MAX_DEPTH) {
+                throw new IOException("Too deeply nested objects");
+            }
+        }
+
+        private Object readNumberOrReference() throws IOException {
+            String token = readToken();
+            long number;
+            try {
+                number = Long.parseLong(token);
+            } catch (NumberFormatException e) {
+                return OTHER;
+            }
+            long afterNumber = in.getPosition();
+            skipWhitespace();
+            if (number >= 0 && isDigit(in.peek())) {
+                String generation = readToken();
+                skipWhitespace();
+                if (in.peek() == 'R') {
+                    in.read();
+                    int next = in.peek();
+                    if (next == -1 || isWhitespace(next) || isDelimiter(next)) {
+                        try {
+                            return new Reference(number, Long.parseLong(generation));
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Invalid reference " + number + " " + generation + " R");
+                        }
+                    }
+                }
+            }
+            in.seek(afterNumber);
+            return number;
+        }
+
+        /**
+         * Names with escaped characters are left to the full parsing, as they may spell any key.
+         */
+        private String readName() throws IOException {
+            String name = readToken();
+            if (name.indexOf('#') >= 0) {
+                throw new IOException("Escaped characters in name " + name);
+            }
+            return name;
+        }
+
+        private String readToken() throws IOException {
+            StringBuilder token = new StringBuilder();
+            for (int c = in.peek(); c != -1 && !isWhitespace(c) && !isDelimiter(c); c = in.peek()) {
+                token.append((char) in.read());
+            }
+            return token.toString();
+        }
+
+        private void skipLiteralString() throws IOException {
+            int nesting = 1;
+            while (nesting > 0) {
+                int c = in.read();
+                if (c == -1) {
+                    throw new IOException("Unterminated string");
+                } else if (c == '\\') {
+                    in.read();
+                } else if (c == '(') {
+                    nesting++;
+                } else if (c == ')') {
+                    nesting--;
+                }
+            }
+        }
+
+        private void skipPast(char end) throws IOException {
+            for (int c = in.read(); c != end; c = in.read()) {
+                if (c == -1) {
+                    throw new IOException("Expected '" + end + "' before end of file");
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> dictionary(Object value) throws IOException {
+        if (value instanceof Map) {
+            return (Map<String, Object>) value;
+        }
+        throw new IOException("Expected a dictionary");
+    }
+
+    private static boolean readFully(RandomAccessRead in, byte[] bytes) throws IOException {
+        int read = 0;
+        while (read < bytes.length) {
+            int length = in.read(bytes, read, bytes.length - read);
+            if (length <= 0) {
+                return false;
+            }
+            read += length;
+        }
+        return true;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0;
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c == '(' || c == ')' || c == '<' || c == '>' || c == '[' || c == ']' || c == '{' || c == '}' || c == '/' || c == '%';
+    }
+}
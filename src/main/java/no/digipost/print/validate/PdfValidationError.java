@@ -38,7 +38,8 @@ public enum PdfValidationError {
     REFERENCES_INVALID_FONT("The document refers to a non-standard font that is not included in the PDF."),
     DOCUMENT_TOO_SMALL("The PDF document size is too small."),
     INVALID_PDF("The PDF document is invalid."),
-    DOCUMENT_HAS_NO_PAGES("The PDF document does not contain any pages. The file may be corrupt.");
+    DOCUMENT_HAS_NO_PAGES("The PDF document does not contain any pages. The file may be corrupt."),
+    VALIDATION_BUDGET_EXCEEDED("The PDF document could not be validated within the time and work allowed for validating a document.");
 
     static final Set<PdfValidationError> OK_FOR_PRINT = Collections.emptySet();
     static final Set<PdfValidationError> OK_FOR_WEB = EnumSet.of(
@@ -15,30 +15,106 @@
  */
 package no.digipost.print.validate;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static java.util.Collections.unmodifiableList;
+import static java.util.stream.Collectors.toList;
 import static no.digipost.print.validate.PdfValidationSettings.*;
 import static no.digipost.print.validate.PdfValidationSettings.DEFAULT_POSITIVE_BLEED_MM;
 
 public final class PdfValidationResult {
 
+    // the errors of a result as bits by ordinal, for the at most 64 kinds of errors
+    private static final long OK_FOR_PRINT_BITS = bits(PdfValidationError.OK_FOR_PRINT);
+    private static final long OK_FOR_WEB_BITS = bits(PdfValidationError.OK_FOR_WEB);
+    private static final List<List<PdfValidationError>> SINGLE_ERRORS = unmodifiableList(
+            Stream.of(PdfValidationError.values()).map(Collections::singletonList).collect(toList()));
+
     public static final PdfValidationResult EVERYTHING_OK = new PdfValidationResult(Collections.<PdfValidationError>emptyList(), -1, new Bleed(DEFAULT_POSITIVE_BLEED_MM, DEFAULT_NEGATIVE_BLEED_MM));
 
+    /**
+     * Results without errors for the standard settings, by number of pages, shared by the validations
+     * giving them instead of allocating a result for each document.
+     */
+    private static final PdfValidationResult[] OK_WITH_DEFAULT_BLEED = IntStream.rangeClosed(0, STANDARD_MAX_PAGES_FOR_AUTOMATED_PRINT)
+            .mapToObj(pages -> new PdfValidationResult(Collections.<PdfValidationError>emptyList(), pages, EVERYTHING_OK.bleed))
+            .toArray(PdfValidationResult[]::new);
+
     public final List<PdfValidationError> errors;
     public final Bleed bleed;
+    /**
+     * The paper format the pages were validated against.
+     */
+    public final PaperFormat paperFormat;
     public final boolean okForPrint;
     public final boolean okForWeb;
     public final int pages;
+    /**
+     * Where the time of the validation was spent, or {@code null} unless the validation was performed
+     * by a {@link PdfValidator#withMetrics(ValidationListener) validator with metrics enabled}.
+     */
+    public final ValidationMetrics metrics;
+    private final long errorBits;
 
 
     PdfValidationResult(List<PdfValidationError> errors, int pages, Bleed bleed) {
+        this(errors, pages, bleed, PaperFormat.A4, null);
+    }
+
+    PdfValidationResult(List<PdfValidationError> errors, int pages, Bleed bleed, ValidationMetrics metrics) {
+        this(errors, pages, bleed, PaperFormat.A4, metrics);
+    }
+
+    PdfValidationResult(List<PdfValidationError> errors, int pages, Bleed bleed, PaperFormat paperFormat, ValidationMetrics metrics) {
         this.pages = pages;
-        this.errors = errors != null ? unmodifiableList(errors) : Collections.<PdfValidationError>emptyList();
-        this.okForPrint = PdfValidationError.OK_FOR_PRINT.containsAll(this.errors);
-        this.okForWeb = PdfValidationError.OK_FOR_WEB.containsAll(this.errors);
+        this.metrics = metrics;
+        this.errors = compact(errors);
+        this.errorBits = bits(this.errors);
+        this.okForPrint = (errorBits & ~OK_FOR_PRINT_BITS) == 0;
+        this.okForWeb = (errorBits & ~OK_FOR_WEB_BITS) == 0;
         this.bleed = bleed;
+        this.paperFormat = paperFormat;
+    }
+
+    /**
+     * @return a result with the given outcome, which may be a shared instance for common outcomes
+     */
+    static PdfValidationResult of(List<PdfValidationError> errors, int pages, Bleed bleed, PaperFormat paperFormat, ValidationMetrics metrics) {
+        if ((errors == null || errors.isEmpty()) && metrics == null && pages >= 0 && pages < OK_WITH_DEFAULT_BLEED.length
+                && bleed.positiveBleedInMM == DEFAULT_POSITIVE_BLEED_MM && bleed.negativeBleedInMM == DEFAULT_NEGATIVE_BLEED_MM
+                && paperFormat.widthInMM == PaperFormat.A4.widthInMM && paperFormat.heightInMM == PaperFormat.A4.heightInMM) {
+            return OK_WITH_DEFAULT_BLEED[pages];
+        }
+        return new PdfValidationResult(errors, pages, bleed, paperFormat, metrics);
+    }
+
+    private static List<PdfValidationError> compact(List<PdfValidationError> errors) {
+        if (errors == null || errors.isEmpty()) {
+            return Collections.emptyList();
+        } else if (errors.size() == 1) {
+            return SINGLE_ERRORS.get(errors.get(0).ordinal());
+        } else {
+            return unmodifiableList(errors);
+        }
+    }
+
+    private static long bits(Collection<PdfValidationError> errors) {
+        long bits = 0;
+        for (PdfValidationError error : errors) {
+            bits |= 1L << error.ordinal();
+        }
+        return bits;
+    }
+
+    /**
+     * @return whether the given error is among the {@link #errors}
+     */
+    public boolean hasError(PdfValidationError error) {
+        return (errorBits & 1L << error.ordinal()) != 0;
     }
 
     public boolean hasErrors() {
@@ -49,10 +125,10 @@ public final class PdfValidationResult {
         if (validationError == PdfValidationError.UNSUPPORTED_DIMENSIONS) {
             return String.format(
                     PdfValidationError.UNSUPPORTED_DIMENSIONS.toString(),
-                    PdfValidator.A4_WIDTH_MM - bleed.negativeBleedInMM,
-                    PdfValidator.A4_WIDTH_MM + bleed.positiveBleedInMM,
-                    PdfValidator.A4_HEIGHT_MM - bleed.negativeBleedInMM,
-                    PdfValidator.A4_HEIGHT_MM + bleed.positiveBleedInMM
+                    paperFormat.widthInMM - bleed.negativeBleedInMM,
+                    paperFormat.widthInMM + bleed.positiveBleedInMM,
+                    paperFormat.heightInMM - bleed.negativeBleedInMM,
+                    paperFormat.heightInMM + bleed.positiveBleedInMM
             );
         } else {
             return validationError.toString();
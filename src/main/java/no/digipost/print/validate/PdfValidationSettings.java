@@ -15,6 +15,24 @@
  */
 package no.digipost.print.validate;
 
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toSet;
+import static java.util.stream.Stream.concat;
 
 public class PdfValidationSettings {
 
@@ -29,6 +47,68 @@ public class PdfValidationSettings {
     // The document is allowed to be x mm smaller than a4 in width and height
     public static final int DEFAULT_NEGATIVE_BLEED_MM = 10;
     public final Bleed bleed;
+    /**
+     * The size of the paper the document is printed on. All pages must have this size, in portrait
+     * or landscape, within the tolerance of the {@link #bleed}.
+     */
+    public final PaperFormat paperFormat;
+    final PageGeometry pageGeometry;
+    /**
+     * The kinds of content which must not be in the barcode area, when {@link #validateLeftMargin validating the left margin}.
+     */
+    public final BarcodeAreaContent barcodeAreaContent;
+    /**
+     * When the content of a page can not be processed to find the content in the barcode area, render only
+     * the barcode area of the page at a low resolution, and look for pixels which are not white, instead of
+     * failing the document with {@link PdfValidationError#UNABLE_TO_VERIFY_SUITABLE_MARGIN_FOR_PRINT}.
+     */
+    public final boolean rasterMarginFallback;
+
+    // Standard Type 1 Fonts (Standard 14 Fonts) -
+    // http://en.wikipedia.org/wiki/Portable_Document_Format#Fonts
+    // Times (v3) (in regular, italic, bold, and bold italic)
+    // Courier (final in regular, oblique, bold and bold oblique)
+    // Helvetica (v3) (in regular, oblique, bold and bold oblique)
+    // Symbol
+    // Zapf Dingbats
+    private static final Set<String> STANDARD_14_FONTS = unmodifiableSet(new HashSet<>(asList("TIMES", "COURIER", "HELVETICA", "SYMBOL", "ZAPFDINGBATS")));
+
+    private static final Set<String> WHITE_LISTED_FONTS = unmodifiableSet(new HashSet<>(asList("ARIAL")));
+
+    public static final Set<String> STANDARD_SUPPORTED_FONTS = concat(STANDARD_14_FONTS.stream(), WHITE_LISTED_FONTS.stream()).collect(collectingAndThen(toSet(), Collections::unmodifiableSet));
+
+    private static final FontNameMatcher STANDARD_FONT_NAME_MATCHER = FontNameMatcher.of(STANDARD_SUPPORTED_FONTS);
+
+    /**
+     * The fonts which may be used without being embedded in the document. A font is supported if its
+     * name contains any of these names, ignoring case, dashes and whitespace.
+     */
+    public final Set<String> supportedFonts;
+    final FontNameMatcher fontNameMatcher;
+    /**
+     * Load the fonts with PDFBox to classify them. This parses embedded font programs, which finds damaged fonts,
+     * and may look up substitutes for fonts which are not embedded among the fonts of the system, which is slow the
+     * first time. Without it, fonts are classified from their font dictionaries only, which is cheaper and never
+     * looks up system fonts, but does not find damaged font programs.
+     */
+    public final boolean inspectFontPrograms;
+    /**
+     * Limits the time and work spent on validating one document. A document exceeding the budget fails with
+     * {@link PdfValidationError#VALIDATION_BUDGET_EXCEEDED}.
+     */
+    public final Budget budget;
+    /**
+     * How much main memory the streams of a document may use while it is validated, before spilling
+     * to scratch files.
+     */
+    public final MemoryPolicy memoryPolicy;
+    /**
+     * Stop the validation at the first error found, instead of collecting all errors. The checks
+     * are then performed from the cheapest to the most expensive: PDF version, number of pages,
+     * dimensions, fonts, and finally text in the barcode area, so documents which can not be printed
+     * are rejected with as little work as possible. The result contains at most one error.
+     */
+    public final boolean failFast;
 
     public PdfValidationSettings(boolean validateLeftMargin, boolean validateFonts, boolean validateNumberOfPages, boolean validatePDFversion,
                                  int positiveBleedInMM, int negativeBleedInMM) {
@@ -43,16 +123,176 @@ public class PdfValidationSettings {
 
     public PdfValidationSettings(boolean validateLeftMargin, boolean validateFonts, boolean validateNumberOfPages, int maxNumberOfPages,
                                  boolean validatePDFversion, int positiveBleedInMM, int negativeBleedInMM) {
-        this.validateLeftMargin = validateLeftMargin;
-        this.validateFonts = validateFonts;
-        this.validateNumberOfPages = validateNumberOfPages;
-        this.maxNumberOfPages = maxNumberOfPages;
-        this.validatePDFversion = validatePDFversion;
-        this.bleed = new Bleed(positiveBleedInMM, negativeBleedInMM);
+        this(new Values(validateLeftMargin, validateFonts, validateNumberOfPages, maxNumberOfPages, validatePDFversion,
+                new Bleed(positiveBleedInMM, negativeBleedInMM)));
+    }
+
+    private PdfValidationSettings(Values values) {
+        this.validateLeftMargin = values.validateLeftMargin;
+        this.validateFonts = values.validateFonts;
+        this.validateNumberOfPages = values.validateNumberOfPages;
+        this.maxNumberOfPages = values.maxNumberOfPages;
+        this.validatePDFversion = values.validatePDFversion;
+        this.bleed = values.bleed;
+        this.failFast = values.failFast;
+        this.supportedFonts = values.supportedFonts;
+        this.fontNameMatcher = values.fontNameMatcher;
+        this.inspectFontPrograms = values.inspectFontPrograms;
+        this.budget = values.budget;
+        this.memoryPolicy = values.memoryPolicy;
+        this.paperFormat = values.paperFormat;
+        this.pageGeometry = new PageGeometry(values.paperFormat, values.bleed);
+        this.barcodeAreaContent = values.barcodeAreaContent;
+        this.rasterMarginFallback = values.rasterMarginFallback;
+    }
+
+    /**
+     * @param change sets the settings to change in a copy of the values of these settings
+     * @return a copy of these settings, with the changes
+     */
+    private PdfValidationSettings with(Consumer<Values> change) {
+        Values values = new Values(this);
+        change.accept(values);
+        return new PdfValidationSettings(values);
+    }
+
+    /**
+     * @return a copy of these settings, with {@link #failFast} set to the given value
+     */
+    public PdfValidationSettings withFailFast(boolean failFast) {
+        return with(values -> values.failFast = failFast);
+    }
+
+    /**
+     * @param supportedFonts the names of the fonts which may be used without being embedded,
+     *                       e.g. {@link #STANDARD_SUPPORTED_FONTS} and some additional fonts
+     * @return a copy of these settings, with the given {@link #supportedFonts}
+     */
+    public PdfValidationSettings withSupportedFonts(Collection<String> supportedFonts) {
+        Set<String> fonts = unmodifiableSet(new LinkedHashSet<>(supportedFonts));
+        return with(values -> {
+            values.supportedFonts = fonts;
+            values.fontNameMatcher = FontNameMatcher.of(fonts);
+        });
+    }
+
+    /**
+     * @return a copy of these settings, with {@link #inspectFontPrograms} set to the given value
+     */
+    public PdfValidationSettings withFontProgramInspection(boolean inspectFontPrograms) {
+        return with(values -> values.inspectFontPrograms = inspectFontPrograms);
+    }
+
+    /**
+     * @return a copy of these settings, with the given {@link #budget}
+     */
+    public PdfValidationSettings withBudget(Budget budget) {
+        return with(values -> values.budget = budget);
+    }
+
+    /**
+     * @return a copy of these settings, with the given {@link #memoryPolicy}
+     */
+    public PdfValidationSettings withMemoryPolicy(MemoryPolicy memoryPolicy) {
+        return with(values -> values.memoryPolicy = memoryPolicy);
+    }
+
+    /**
+     * @return a copy of these settings, with the given {@link #paperFormat}
+     */
+    public PdfValidationSettings withPaperFormat(PaperFormat paperFormat) {
+        return with(values -> values.paperFormat = paperFormat);
+    }
+
+    /**
+     * @return a copy of these settings, with the given {@link #barcodeAreaContent}
+     */
+    public PdfValidationSettings withBarcodeAreaContent(BarcodeAreaContent barcodeAreaContent) {
+        return with(values -> values.barcodeAreaContent = barcodeAreaContent);
+    }
+
+    /**
+     * @return a copy of these settings, with {@link #rasterMarginFallback} set to the given value
+     */
+    public PdfValidationSettings withRasterMarginFallback(boolean rasterMarginFallback) {
+        return with(values -> values.rasterMarginFallback = rasterMarginFallback);
+    }
+
+    /**
+     * @return the values of all the settings which may affect the result of a validation, for identifying
+     *         results in a {@link ValidationResultCache}
+     */
+    List<Object> resultFingerprint() {
+        return asList(validateLeftMargin, validateFonts, validateNumberOfPages, maxNumberOfPages, validatePDFversion,
+                bleed.positiveBleedInMM, bleed.negativeBleedInMM, failFast, fontNameMatcher, inspectFontPrograms,
+                budget.maxMillis, budget.maxContentStreamOperators, budget.maxObjects, paperFormat.widthInMM, paperFormat.heightInMM,
+                barcodeAreaContent.text, barcodeAreaContent.images, barcodeAreaContent.vectorGraphics, rasterMarginFallback);
     }
 
     public static final PdfValidationSettings CHECK_ALL = new PdfValidationSettings(true, true, true, true);
 
+    /**
+     * The values of all the settings, which are changed one at a time to create modified copies of the settings.
+     */
+    private static final class Values {
+
+        boolean validateLeftMargin;
+        boolean validateFonts;
+        boolean validateNumberOfPages;
+        int maxNumberOfPages;
+        boolean validatePDFversion;
+        Bleed bleed;
+        boolean failFast;
+        Set<String> supportedFonts;
+        FontNameMatcher fontNameMatcher;
+        boolean inspectFontPrograms;
+        Budget budget;
+        MemoryPolicy memoryPolicy;
+        PaperFormat paperFormat;
+        BarcodeAreaContent barcodeAreaContent;
+        boolean rasterMarginFallback;
+
+        /**
+         * The given settings, and the defaults for the rest.
+         */
+        Values(boolean validateLeftMargin, boolean validateFonts, boolean validateNumberOfPages, int maxNumberOfPages,
+               boolean validatePDFversion, Bleed bleed) {
+            this.validateLeftMargin = validateLeftMargin;
+            this.validateFonts = validateFonts;
+            this.validateNumberOfPages = validateNumberOfPages;
+            this.maxNumberOfPages = maxNumberOfPages;
+            this.validatePDFversion = validatePDFversion;
+            this.bleed = bleed;
+            this.failFast = false;
+            this.supportedFonts = STANDARD_SUPPORTED_FONTS;
+            this.fontNameMatcher = STANDARD_FONT_NAME_MATCHER;
+            this.inspectFontPrograms = true;
+            this.budget = Budget.UNLIMITED;
+            this.memoryPolicy = MemoryPolicy.MAIN_MEMORY_ONLY;
+            this.paperFormat = PaperFormat.A4;
+            this.barcodeAreaContent = BarcodeAreaContent.TEXT;
+            this.rasterMarginFallback = false;
+        }
+
+        Values(PdfValidationSettings settings) {
+            this.validateLeftMargin = settings.validateLeftMargin;
+            this.validateFonts = settings.validateFonts;
+            this.validateNumberOfPages = settings.validateNumberOfPages;
+            this.maxNumberOfPages = settings.maxNumberOfPages;
+            this.validatePDFversion = settings.validatePDFversion;
+            this.bleed = settings.bleed;
+            this.failFast = settings.failFast;
+            this.supportedFonts = settings.supportedFonts;
+            this.fontNameMatcher = settings.fontNameMatcher;
+            this.inspectFontPrograms = settings.inspectFontPrograms;
+            this.budget = settings.budget;
+            this.memoryPolicy = settings.memoryPolicy;
+            this.paperFormat = settings.paperFormat;
+            this.barcodeAreaContent = settings.barcodeAreaContent;
+            this.rasterMarginFallback = settings.rasterMarginFallback;
+        }
+    }
+
     public static class Bleed {
 
         public final int positiveBleedInMM;
@@ -64,4 +304,128 @@ public class PdfValidationSettings {
         }
     }
 
+    /**
+     * The size of a sheet of paper, in portrait.
+     */
+    public static class PaperFormat {
+
+        public static final PaperFormat A4 = new PaperFormat(PdfValidator.A4_WIDTH_MM, PdfValidator.A4_HEIGHT_MM);
+        public static final PaperFormat A5 = new PaperFormat(148, 210);
+        /**
+         * US Letter, 8.5 × 11 inches, which is 215.9 × 279.4 mm.
+         */
+        public static final PaperFormat LETTER = new PaperFormat(216, 279);
+
+        public final int widthInMM;
+        public final int heightInMM;
+
+        public PaperFormat(int widthInMM, int heightInMM) {
+            if (widthInMM <= 0 || heightInMM <= 0) {
+                throw new IllegalArgumentException("The size of a paper format must be positive, was " + widthInMM + " × " + heightInMM + " mm");
+            }
+            this.widthInMM = widthInMM;
+            this.heightInMM = heightInMM;
+        }
+
+        @Override
+        public String toString() {
+            return widthInMM + " × " + heightInMM + " mm";
+        }
+    }
+
+    /**
+     * The kinds of content to look for in the barcode area. Finding any of them fails the document with
+     * {@link PdfValidationError#INSUFFICIENT_MARGIN_FOR_PRINT}. All kinds are found in the same pass over the
+     * content of each page, but looking for images and vector graphics processes more of the content.
+     */
+    public static class BarcodeAreaContent {
+
+        public static final BarcodeAreaContent TEXT = new BarcodeAreaContent(true, false, false);
+        public static final BarcodeAreaContent ALL = new BarcodeAreaContent(true, true, true);
+
+        public final boolean text;
+        public final boolean images;
+        public final boolean vectorGraphics;
+
+        /**
+         * @param text visible glyphs
+         * @param images image XObjects and inline images
+         * @param vectorGraphics filled or stroked paths, and shadings, except paths painted in white
+         */
+        public BarcodeAreaContent(boolean text, boolean images, boolean vectorGraphics) {
+            this.text = text;
+            this.images = images;
+            this.vectorGraphics = vectorGraphics;
+        }
+    }
+
+    /**
+     * The maximum time and work to spend on validating one document. The budget is checked before each page,
+     * and while processing the content of the pages, so a validation may run slightly past it.
+     * {@link Long#MAX_VALUE} means no limit.
+     */
+    public static class Budget {
+
+        public static final Budget UNLIMITED = new Budget(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+
+        public final long maxMillis;
+        public final long maxContentStreamOperators;
+        public final long maxObjects;
+
+        /**
+         * @param maxMillis the maximum wall-clock time to spend, from when the validation starts
+         * @param maxContentStreamOperators the maximum number of operators to process in the content streams of all the pages
+         * @param maxObjects the maximum number of objects in the cross-reference table of the document
+         */
+        public Budget(long maxMillis, long maxContentStreamOperators, long maxObjects) {
+            this.maxMillis = maxMillis;
+            this.maxContentStreamOperators = maxContentStreamOperators;
+            this.maxObjects = maxObjects;
+        }
+    }
+
+    /**
+     * Where PDFBox keeps the streams of a document while it is parsed and validated. Beyond the
+     * main memory limit, streams are kept in a scratch file, which is deleted when the validation
+     * of the document is done. This bounds the heap used for large documents, but not the heap
+     * used for the document itself, so large documents should also be validated from a
+     * {@link PdfValidator#validate(Path, PdfValidationSettings) file}.
+     */
+    public static class MemoryPolicy {
+
+        public static final MemoryPolicy MAIN_MEMORY_ONLY = new MemoryPolicy(Long.MAX_VALUE, null);
+
+        public final long maxMainMemoryBytes;
+        public final Path scratchDirectory;
+
+        /**
+         * @param maxMainMemoryBytes the maximum main memory to use for the streams of one document,
+         *                           or {@link Long#MAX_VALUE} to never use scratch files
+         * @param scratchDirectory the directory to create scratch files in, or {@code null} for
+         *                         the default temporary-file directory
+         */
+        public MemoryPolicy(long maxMainMemoryBytes, Path scratchDirectory) {
+            if (maxMainMemoryBytes < 0) {
+                throw new IllegalArgumentException("maxMainMemoryBytes must not be negative, was " + maxMainMemoryBytes);
+            }
+            this.maxMainMemoryBytes = maxMainMemoryBytes;
+            this.scratchDirectory = scratchDirectory;
+        }
+
+        public MemoryPolicy(long maxMainMemoryBytes) {
+            this(maxMainMemoryBytes, null);
+        }
+
+        StreamCacheCreateFunction streamCache() {
+            if (maxMainMemoryBytes == Long.MAX_VALUE) {
+                return IOUtils.createMemoryOnlyStreamCache();
+            }
+            MemoryUsageSetting memoryUsage = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+            if (scratchDirectory != null) {
+                memoryUsage.setTempDir(scratchDirectory.toFile());
+            }
+            return memoryUsage.streamCache;
+        }
+    }
+
 }
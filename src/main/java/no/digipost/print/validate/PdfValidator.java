@@ -15,51 +15,58 @@
  */
 package no.digipost.print.validate;
 
-import no.digipost.print.validate.PdfValidationSettings.Bleed;
+import no.digipost.print.validate.ValidationContext.BudgetExceeded;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessRead;
 import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
-import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.text.PDFTextStripperByArea;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.awt.geom.Rectangle2D;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 import static java.util.Arrays.asList;
-import static java.util.stream.Collectors.joining;
-import static no.digipost.print.validate.PdfValidationError.INSUFFICIENT_MARGIN_FOR_PRINT;
-import static no.digipost.print.validate.PdfValidationError.UNABLE_TO_VERIFY_SUITABLE_MARGIN_FOR_PRINT;
-import static no.digipost.print.validate.PdfValidationError.UNSUPPORTED_DIMENSIONS;
+import static java.util.Collections.singletonList;
+import static java.util.Objects.requireNonNull;
 
 
 public class PdfValidator {
 
     private static final Logger LOG = LoggerFactory.getLogger(PdfValidator.class);
 
+    private static final int WARM_UP_ITERATIONS = 20;
+
     static {
         PDFBoxConfigurer.configure();
     }
 
 
-    private final PdfFontValidator fontValidator = new PdfFontValidator();
+    private final PdfFontValidator fontValidator;
+    private final ConcurrentPageChecker concurrentPageChecker;
+    private final ValidationListener listener;
+    private final ValidationResultCache resultCache;
+    private final ValidationResultStore resultStore;
+    private final MarginVerdictCache marginVerdictCache;
 
     // MM_TO_UNITS copied from org.apache.pdfbox.pdmodel.PDPage
-    private static final double MM_TO_POINTS = 1 / (10 * 2.54f) * 72;
+    static final double MM_TO_POINTS = 1 / (10 * 2.54f) * 72;
 
     public static final int A4_HEIGHT_MM = 297;
     public static final int A4_WIDTH_MM = 210;
@@ -70,26 +77,302 @@ public class PdfValidator {
     public static final List<Float> PDF_VERSIONS_SUPPORTED_FOR_PRINT = Arrays.asList(1.0f, 1.1f, 1.2f, 1.3f, 1.4f, 1.5f, 1.6f, 1.7f);
 
 
+    /**
+     * Creates a validator which checks the pages of each document sequentially, on the thread invoking
+     * the validation.
+     */
+    public PdfValidator() {
+        this(null);
+    }
+
+    /**
+     * Creates a validator which checks the pages of each document sequentially, on the thread invoking
+     * the validation, and looks up whether fonts are supported for print in the given cache.
+     *
+     * @param fontVerdictCache the cache of fonts already classified, which may be shared with other validators,
+     *                         or {@code null} to classify the fonts of each document anew
+     */
+    public PdfValidator(FontVerdictCache fontVerdictCache) {
+        this(new PdfFontValidator(fontVerdictCache), null, null, null, null, null);
+    }
+
+    /**
+     * Creates a validator which checks the pages of each document concurrently, split into at most
+     * {@code parallelism} ranges of consecutive pages. The first range is checked on the thread invoking
+     * the validation, and the rest on the given executor, each parsing its own instance of the document.
+     * This shortens the time to validate documents with many pages, at the cost of parsing the whole
+     * document once per range, so the time spent parsing, and the memory used by the parsed documents,
+     * grow with {@code parallelism}. Documents with few pages are therefore not split into ranges.
+     * The result is the same as when checking the pages sequentially, except that a
+     * {@link PdfValidationSettings#budget budget} may be exceeded by pages which checking sequentially
+     * would never reach.
+     * <p>
+     * The executor may be the same as the documents are validated on, e.g. by a {@link PdfBatchValidator},
+     * as ranges which have not yet started on the executor are checked by the thread invoking the validation.
+     *
+     * @param pageExecutor the executor to check pages on, e.g. a {@link java.util.concurrent.ForkJoinPool}
+     *                     or a fixed thread pool. It is not shut down by the validator.
+     * @param parallelism the maximum number of ranges to split the pages of a document into.
+     *                    {@code 1} means pages are checked sequentially, as with {@link #PdfValidator()}.
+     */
+    public PdfValidator(Executor pageExecutor, int parallelism) {
+        this(pageExecutor, parallelism, null);
+    }
+
+    /**
+     * Creates a validator which checks the pages of each document concurrently, as with
+     * {@link #PdfValidator(Executor, int)}, and looks up whether fonts are supported for print
+     * in the given cache.
+     *
+     * @param fontVerdictCache the cache of fonts already classified, which may be shared with other validators,
+     *                         or {@code null} to classify the fonts of each document anew
+     */
+    public PdfValidator(Executor pageExecutor, int parallelism, FontVerdictCache fontVerdictCache) {
+        this(new PdfFontValidator(fontVerdictCache), new ConcurrentPageChecker(pageExecutor, parallelism), null, null, null, null);
+    }
+
+    private PdfValidator(PdfFontValidator fontValidator, ConcurrentPageChecker concurrentPageChecker, ValidationListener listener,
+                         ValidationResultCache resultCache, ValidationResultStore resultStore, MarginVerdictCache marginVerdictCache) {
+        this.fontValidator = fontValidator;
+        this.concurrentPageChecker = concurrentPageChecker;
+        this.listener = listener;
+        this.resultCache = resultCache;
+        this.resultStore = resultStore;
+        this.marginVerdictCache = marginVerdictCache;
+    }
+
+    /**
+     * Enables collecting {@link ValidationMetrics metrics} of each validation: the time spent in each phase,
+     * and counters of the work done. The metrics are available as {@link PdfValidationResult#metrics}, and
+     * each result is given to the listener, e.g. to record the metrics with a metrics library.
+     * Without metrics enabled, no time is spent collecting them.
+     *
+     * @param listener receives the result of each validation, or {@code (result -> {})} to only
+     *                 have the metrics available on the results
+     * @return a copy of this validator, with metrics enabled
+     */
+    public PdfValidator withMetrics(ValidationListener listener) {
+        return new PdfValidator(fontValidator, concurrentPageChecker, requireNonNull(listener, "listener"), resultCache, resultStore, marginVerdictCache);
+    }
+
+    /**
+     * Enables looking up the result of validating a document in the given cache before validating it,
+     * so a document which is byte-identical to a recently validated document is not validated again.
+     *
+     * @param resultCache the cache of results, which may be shared with other validators
+     * @return a copy of this validator, looking up results in the given cache
+     */
+    public PdfValidator withResultCache(ValidationResultCache resultCache) {
+        return new PdfValidator(fontValidator, concurrentPageChecker, listener, requireNonNull(resultCache, "resultCache"), resultStore, marginVerdictCache);
+    }
+
+    /**
+     * Enables looking up the result of validating a document in the given store before validating it,
+     * and putting the result of each validation in the store, so results survive restarts, and may be
+     * shared by several nodes. With a {@link #withResultCache(ValidationResultCache) result cache} as well,
+     * the cache is looked up first, and results found in the store are put in the cache.
+     * Results from the store have no metrics, and are not given to the listener. Failing to get or put
+     * a result in the store does not fail the validation.
+     *
+     * @param resultStore the store of results, which may be shared with other validators
+     * @return a copy of this validator, looking up and storing results in the given store
+     */
+    public PdfValidator withResultStore(ValidationResultStore resultStore) {
+        return new PdfValidator(fontValidator, concurrentPageChecker, listener, resultCache, requireNonNull(resultStore, "resultStore"), marginVerdictCache);
+    }
+
+    /**
+     * Enables looking up whether pages show content in the barcode area in the given cache, so pages with the same
+     * content as pages of earlier documents are not inspected again. Pages with the same content in the same
+     * document are only inspected once regardless.
+     *
+     * @param marginVerdictCache the cache of pages already inspected, which may be shared with other validators
+     * @return a copy of this validator, looking up pages in the given cache
+     */
+    public PdfValidator withMarginVerdictCache(MarginVerdictCache marginVerdictCache) {
+        return new PdfValidator(fontValidator, concurrentPageChecker, listener, resultCache, resultStore, requireNonNull(marginVerdictCache, "marginVerdictCache"));
+    }
+
+    /**
+     * Validates a generated sample document a number of times with a few different settings, to load the
+     * classes, compile the frequently run code, and fill the caches used by the validation, e.g. the fonts
+     * of PDFBox, before the first real document is validated. Call this before reporting the application
+     * ready, to avoid a slow first validation. The results of warming up are not given to the listener,
+     * or put in the result cache or store, or the margin verdict cache.
+     */
+    public void warmUp() {
+        PdfValidator validator = new PdfValidator(fontValidator, concurrentPageChecker, null, null, null, null);
+        byte[] sampleDocument = WarmUpDocument.generate();
+        List<PdfValidationSettings> settings = asList(
+                PdfValidationSettings.CHECK_ALL, PdfValidationSettings.CHECK_ALL.withFailFast(true), PdfValidationSettings.CHECK_ALL.withFontProgramInspection(false));
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            for (PdfValidationSettings warmUpSettings : settings) {
+                validator.validate(sampleDocument, warmUpSettings);
+            }
+        }
+    }
+
+    /**
+     * Validates the PDF directly from the given array, without copying it.
+     * The array must not be modified while the validation is running.
+     */
     public PdfValidationResult validate(byte[] pdfContent, PdfValidationSettings printValidationSettings) {
-        return validateForPrint(new ByteArrayInputStream(pdfContent), printValidationSettings);
+        return validateForPrint(new RandomAccessReadBuffer(pdfContent), () -> new RandomAccessReadBuffer(pdfContent), printValidationSettings, newContext(printValidationSettings));
     }
 
+    /**
+     * Validates the PDF in the {@link ByteBuffer#remaining() remaining} bytes of the given buffer,
+     * directly from the memory of the buffer, without copying it. Heap, direct and read-only buffers
+     * are supported. The position and limit of the given buffer is not changed, and the content
+     * must not be modified while the validation is running.
+     */
+    public PdfValidationResult validate(ByteBuffer pdfContent, PdfValidationSettings printValidationSettings) {
+        return validate(pdfContent, printValidationSettings, newContext(printValidationSettings));
+    }
+
+    /**
+     * Validates the PDF file using memory-mapped I/O, so only the parts of the file which are
+     * actually read by the validation are paged into memory, and the file is not copied to the heap.
+     * The file must not be modified while the validation is running.
+     */
     public PdfValidationResult validate(Path pdfFile, PdfValidationSettings printValidationSettings) throws IOException {
-        try (InputStream pdfStream = openFileAsInputStream(pdfFile)) {
-            return validateForPrint(pdfStream, printValidationSettings);
+        return validate(pdfFile, printValidationSettings, newContext(printValidationSettings));
+    }
+
+    private PdfValidationResult validate(ByteBuffer pdfContent, PdfValidationSettings printValidationSettings, ValidationContext context) {
+        ByteBuffer pdf = pdfContent.slice();
+        return validateForPrint(new RandomAccessReadBuffer(pdf.duplicate()), () -> new RandomAccessReadBuffer(pdf.duplicate()), printValidationSettings, context);
+    }
+
+    private PdfValidationResult validate(Path pdfFile, PdfValidationSettings printValidationSettings, ValidationContext context) throws IOException {
+        // the file is already closed if the document was parsed, but not if it was rejected before parsing it, or failed to parse
+        try (RandomAccessRead pdf = openFile(pdfFile)) {
+            return validateForPrint(pdf, () -> openFile(pdfFile), printValidationSettings, context);
         }
     }
 
     /**
-     * @param pdfStream the input stream for reading the PDF. This method will <strong>not</strong> close the stream.
+     * Validates the PDF in the given array on the given executor, as with {@link #validate(byte[], PdfValidationSettings)}.
+     *
+     * @return the result of the validation, which may be {@link CompletableFuture#cancel(boolean) cancelled}
+     *         through {@link CompletionStage#toCompletableFuture()}
+     * @see #validateAsync(Path, PdfValidationSettings, Executor)
+     */
+    public CompletionStage<PdfValidationResult> validateAsync(byte[] pdfContent, PdfValidationSettings printValidationSettings, Executor executor) {
+        return validateAsync(context -> validateForPrint(
+                new RandomAccessReadBuffer(pdfContent), () -> new RandomAccessReadBuffer(pdfContent), printValidationSettings, context), printValidationSettings, executor);
+    }
+
+    /**
+     * Validates the PDF in the remaining bytes of the given buffer on the given executor,
+     * as with {@link #validate(ByteBuffer, PdfValidationSettings)}.
+     *
+     * @return the result of the validation, which may be {@link CompletableFuture#cancel(boolean) cancelled}
+     *         through {@link CompletionStage#toCompletableFuture()}
+     * @see #validateAsync(Path, PdfValidationSettings, Executor)
+     */
+    public CompletionStage<PdfValidationResult> validateAsync(ByteBuffer pdfContent, PdfValidationSettings printValidationSettings, Executor executor) {
+        return validateAsync(context -> validate(pdfContent, printValidationSettings, context), printValidationSettings, executor);
+    }
+
+    /**
+     * Validates the PDF file on the given executor, as with {@link #validate(Path, PdfValidationSettings)}.
+     * <p>
+     * Completing the returned stage before the validation is done, e.g. by
+     * {@link CompletableFuture#cancel(boolean) cancelling} it, stops the validation before parsing the
+     * document, or before checking the next page, and releases the thread it runs on. Pages already
+     * being checked on other threads when {@link #PdfValidator(Executor, int) checking pages concurrently}
+     * are stopped as well.
+     *
+     * @param executor the executor to perform the validation on
+     * @return the result of the validation, which may be {@link CompletableFuture#cancel(boolean) cancelled}
+     *         through {@link CompletionStage#toCompletableFuture()}. If the file can not be read,
+     *         the stage completes exceptionally with the {@link IOException}.
+     */
+    public CompletionStage<PdfValidationResult> validateAsync(Path pdfFile, PdfValidationSettings printValidationSettings, Executor executor) {
+        return validateAsync(context -> validate(pdfFile, printValidationSettings, context), printValidationSettings, executor);
+    }
+
+    private CompletionStage<PdfValidationResult> validateAsync(AsyncValidation validation, PdfValidationSettings printValidationSettings, Executor executor) {
+        ValidationContext context = newContext(printValidationSettings);
+        CompletableFuture<PdfValidationResult> result = new CompletableFuture<>();
+        result.whenComplete((completedResult, failure) -> context.cancel());
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(validation.validate(context));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private ValidationContext newContext(PdfValidationSettings printValidationSettings) {
+        return new ValidationContext(printValidationSettings.budget, listener != null ? new ValidationMetrics.Recorder() : null);
+    }
+
+    @FunctionalInterface
+    private interface AsyncValidation {
+        PdfValidationResult validate(ValidationContext context) throws IOException;
+    }
+
+    /**
+     * @param pdf the PDF to read. It is closed along with the parsed document when parsing it succeeds, but the
+     *            caller must close it when the document is not parsed, e.g. when the result is known or the
+     *            document is rejected before parsing it, or when parsing fails. Closing it again is harmless.
+     * @param pdfSource opens the same PDF again, for checking pages concurrently
      * @param printValidationSettings settings for how to perform the validation
+     * @param context the state of the validation
+     * @throws CancellationException if the validation is cancelled. Exceeding the {@link PdfValidationSettings#budget budget}
+     *                               gives the result {@link PdfValidationError#VALIDATION_BUDGET_EXCEEDED}.
      */
-    private PdfValidationResult validateForPrint(InputStream pdfStream, PdfValidationSettings printValidationSettings) {
+    private PdfValidationResult validateForPrint(RandomAccessRead pdf, PdfSource pdfSource, PdfValidationSettings printValidationSettings, ValidationContext context) {
+        ResultKey resultKey = null;
+        if (resultCache != null || resultStore != null) {
+            try {
+                resultKey = ResultKey.of(pdf, printValidationSettings);
+            } catch (IOException e) {
+                LOG.debug("Unable to look up the PDF among known results. ({}: '{}')", e.getClass().getSimpleName(), e.getMessage(), e);
+            }
+            PdfValidationResult known = resultKey != null ? knownResult(resultKey) : null;
+            if (known != null) {
+                return known;
+            }
+        }
+
+        context.start();
+        Object event = ValidationEvents.documentStarted();
+        long sizeInBytes = event != null ? sizeInBytes(pdf) : -1;
+        if (mayRejectBeforeParsing(printValidationSettings)) {
+            long triageStart = context.metrics != null ? System.nanoTime() : 0;
+            PdfTriage triage = PdfTriage.of(pdf);
+            if (context.metrics != null) {
+                context.metrics.phase(ValidationMetrics.Phase.PARSE, System.nanoTime() - triageStart);
+            }
+            List<PdfValidationError> rejection = rejectBeforeParsing(triage, printValidationSettings);
+            if (!rejection.isEmpty()) {
+                return result(rejection, triage.numberOfPages, printValidationSettings, context, event, sizeInBytes, resultKey);
+            }
+        }
+
         int numberOfPages = -1;
         List<PdfValidationError> errors;
-        try (PDDocument pdDoc = Loader.loadPDF(new RandomAccessReadBuffer(pdfStream))) {
+        try (PDDocument pdDoc = load(pdf, printValidationSettings.memoryPolicy, context)) {
+            context.documentObjects(pdDoc.getDocument().getXrefTable().size());
             numberOfPages = pdDoc.getNumberOfPages();
-            errors = validateDocumentForPrint(pdDoc, printValidationSettings);
+            errors = validateDocumentForPrint(pdDoc, pdfSource, printValidationSettings, context);
+        } catch (BudgetExceeded budgetExceeded) {
+            errors = asList(PdfValidationError.VALIDATION_BUDGET_EXCEEDED);
+            LOG.debug("{} ({})", PdfValidationError.VALIDATION_BUDGET_EXCEEDED, budgetExceeded.getMessage());
+        } catch (CancellationException cancelled) {
+            throw cancelled;
         } catch (InvalidPasswordException invalidPassword) {
             errors = failValidationIfEncrypted(new ArrayList<>());
         } catch (Exception e) {
@@ -97,19 +380,118 @@ public class PdfValidator {
             LOG.debug("PDF could not be parsed. ({}: '{}')", e.getClass().getSimpleName(), e.getMessage(), e);
         }
 
-        return new PdfValidationResult(errors, numberOfPages, printValidationSettings.bleed);
+        return result(errors, numberOfPages, printValidationSettings, context, event, sizeInBytes, resultKey);
+    }
+
+    private PdfValidationResult result(List<PdfValidationError> errors, int numberOfPages, PdfValidationSettings settings, ValidationContext context,
+                                       Object event, long sizeInBytes, ResultKey resultKey) {
+        PdfValidationResult result = PdfValidationResult.of(errors, numberOfPages, settings.bleed, settings.paperFormat, context.completeMetrics());
+        if (resultKey != null && !errors.contains(PdfValidationError.VALIDATION_BUDGET_EXCEEDED)) {
+            rememberResult(resultKey, result);
+        }
+        if (event != null) {
+            ValidationEvents.documentValidated(event, sizeInBytes, result);
+        }
+        if (listener != null) {
+            try {
+                listener.validated(result);
+            } catch (RuntimeException e) {
+                LOG.warn("The validation listener failed. ({}: '{}')", e.getClass().getSimpleName(), e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the result of a previous validation of the same document with the same settings,
+     *         from the result cache or the result store, or {@code null} if it is not known
+     */
+    private PdfValidationResult knownResult(ResultKey resultKey) {
+        PdfValidationResult known = resultCache != null ? resultCache.get(resultKey) : null;
+        if (known == null && resultStore != null) {
+            try {
+                known = resultStore.get(resultKey.toHex());
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Unable to get the result from the result store. ({}: '{}')", e.getClass().getSimpleName(), e.getMessage(), e);
+            }
+            if (known != null && resultCache != null) {
+                resultCache.put(resultKey, known);
+            }
+        }
+        return known;
+    }
+
+    private void rememberResult(ResultKey resultKey, PdfValidationResult result) {
+        if (resultCache != null) {
+            resultCache.put(resultKey, result);
+        }
+        if (resultStore != null) {
+            try {
+                resultStore.put(resultKey.toHex(), result);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Unable to put the result in the result store. ({}: '{}')", e.getClass().getSimpleName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * The document may only be rejected before parsing it when {@link PdfValidationSettings#failFast failing fast},
+     * and checking the version or the number of pages. A limit on the number of objects is checked before the
+     * version, so the document is never rejected before parsing with such a budget.
+     */
+    private static boolean mayRejectBeforeParsing(PdfValidationSettings settings) {
+        return settings.failFast && (settings.validatePDFversion || settings.validateNumberOfPages) && settings.budget.maxObjects == Long.MAX_VALUE;
+    }
+
+    /**
+     * Rejects the document from what is known before parsing it, with the same result as parsing and validating
+     * the document would give. This is only the case when the number of pages is known, and the document is not
+     * encrypted, as whether an encrypted document is reported as encrypted, or as not parseable, is only known
+     * from parsing it.
+     *
+     * @return the errors to reject the document with, or an empty list if it must be parsed and validated
+     */
+    private List<PdfValidationError> rejectBeforeParsing(PdfTriage triage, PdfValidationSettings settings) {
+        List<PdfValidationError> errors = new ArrayList<>(1);
+        if (triage.encrypted || triage.numberOfPages == PdfTriage.UNKNOWN_NUMBER_OF_PAGES) {
+            return errors;
+        }
+        if (settings.validatePDFversion) {
+            if (triage.version == PdfTriage.UNKNOWN_VERSION) {
+                return errors;
+            }
+            validatePdfVersion(triage.version, errors);
+            if (!errors.isEmpty()) {
+                return errors;
+            }
+        }
+        if (settings.validateNumberOfPages && triage.numberOfPages > settings.maxNumberOfPages) {
+            validerSideantall(triage.numberOfPages, settings.maxNumberOfPages, errors);
+        }
+        return errors;
     }
 
     /**
      * Leser hele dokumentet inn i minnet
      */
     List<PdfValidationError> validateDocumentForPrint(PDDocument pdDoc, PdfValidationSettings settings)	throws IOException {
+        ValidationContext context = new ValidationContext(settings.budget, null);
+        context.start();
+        return validateDocumentForPrint(pdDoc, null, settings, context);
+    }
+
+    private List<PdfValidationError> validateDocumentForPrint(
+            PDDocument pdDoc, PdfSource pdfSource, PdfValidationSettings settings, ValidationContext context) throws IOException {
         List<PdfValidationError> errors = new ArrayList<>();
 
         if (pdDoc.isEncrypted()) {
             return failValidationIfEncrypted(errors);
         }
 
+        if (settings.failFast) {
+            return validateDocumentUntilFirstError(pdDoc, pdfSource, settings, context, errors);
+        }
+
         if (settings.validateNumberOfPages) {
             validerSideantall(pdDoc.getNumberOfPages(), settings.maxNumberOfPages, errors);
         }
@@ -118,69 +500,81 @@ public class PdfValidator {
             validatePdfVersion(pdDoc.getDocument().getVersion(), errors);
         }
 
-        boolean documentHasInvalidDimensions = false;
-        for (PDPage page : pdDoc.getPages()) {
-            if (hasInvalidDimensions(page, settings.bleed)) {
-                documentHasInvalidDimensions = true;
-                break;
-            }
-        }
+        checkPages(pdDoc, pdfSource, settings, () -> pageChecks(settings, context)).addErrors(errors);
 
-        addValidationError(documentHasInvalidDimensions, UNSUPPORTED_DIMENSIONS, errors);
+        return errors;
+    }
 
-        boolean hasTextInBarcodeArea = false;
-        boolean documentContainsPagesWithInvalidPrintMargins = false;
-        if (settings.validateLeftMargin) {
-            for (PDPage page : pdDoc.getPages()) {
-                try {
-                    if (hasTextInBarcodeArea(page, settings.bleed)) {
-                        hasTextInBarcodeArea = true;
-                        break;
-                    }
-                } catch (Exception npe) {
-                    documentContainsPagesWithInvalidPrintMargins = true;
-                    LOG.debug("Unable to validate the margin on one of the pages.", npe);
-                }
+    /**
+     * Performs the checks from the cheapest to the most expensive, and stops at the first error.
+     * The dimensions of all pages are checked before the content of any page.
+     */
+    private List<PdfValidationError> validateDocumentUntilFirstError(
+            PDDocument pdDoc, PdfSource pdfSource, PdfValidationSettings settings, ValidationContext context, List<PdfValidationError> errors) throws IOException {
+
+        if (settings.validatePDFversion) {
+            validatePdfVersion(pdDoc.getDocument().getVersion(), errors);
+            if (!errors.isEmpty()) {
+                return errors;
             }
         }
 
-        addValidationError(documentContainsPagesWithInvalidPrintMargins, UNABLE_TO_VERIFY_SUITABLE_MARGIN_FOR_PRINT, errors);
-        addValidationError(hasTextInBarcodeArea, INSUFFICIENT_MARGIN_FOR_PRINT, errors);
-
-        if (settings.validateFonts) {
-            for (PDPage page : pdDoc.getPages()) {
-                validateFonts(fontValidator.getPageFonts(page), errors);
+        if (settings.validateNumberOfPages) {
+            validerSideantall(pdDoc.getNumberOfPages(), settings.maxNumberOfPages, errors);
+            if (!errors.isEmpty()) {
+                return errors;
             }
         }
 
+        PageChecks dimensions = new PageChecks(singletonList(new PageDimensionsCheck(settings.pageGeometry)), true, context);
+        dimensions.checkPages(pdDoc, 0, Integer.MAX_VALUE);
+        dimensions.addErrors(errors);
+        if (!errors.isEmpty()) {
+            return errors;
+        }
+
+        if (settings.validateFonts || settings.validateLeftMargin) {
+            checkPages(pdDoc, pdfSource, settings, () -> contentChecksUntilFirstError(settings, context)).addErrors(errors);
+        }
         return errors;
     }
 
-    private void addValidationError(boolean documentContainsPagesThatCannotBeParsed, PdfValidationError validationErrors,
-                                    List<PdfValidationError> errors) {
-        if (documentContainsPagesThatCannotBeParsed) {
-            errors.add(validationErrors);
+    private PageChecks checkPages(PDDocument pdDoc, PdfSource pdfSource, PdfValidationSettings settings, Supplier<PageChecks> newPageChecks) throws IOException {
+        if (concurrentPageChecker != null && pdfSource != null) {
+            return concurrentPageChecker.checkPages(pdDoc, pdfSource, settings.memoryPolicy, newPageChecks);
         }
+        PageChecks pageChecks = newPageChecks.get();
+        pageChecks.checkPages(pdDoc, 0, Integer.MAX_VALUE);
+        return pageChecks;
     }
 
-    private List<PdfValidationError> failValidationIfEncrypted(List<PdfValidationError> errors) {
-        errors.add(PdfValidationError.PDF_IS_ENCRYPTED);
-        LOG.debug("The pdf is encrypted.");
-        return errors;
+    private PageChecks pageChecks(PdfValidationSettings settings, ValidationContext context) {
+        List<PageCheck> pageChecks = new ArrayList<>(3);
+        pageChecks.add(new PageDimensionsCheck(settings.pageGeometry));
+        if (settings.validateLeftMargin) {
+            pageChecks.add(new BarcodeAreaCheck(settings.pageGeometry, settings.barcodeAreaContent, settings.rasterMarginFallback, marginVerdictCache, context));
+        }
+        if (settings.validateFonts) {
+            pageChecks.add(new PageFontsCheck(fontValidator, settings.fontNameMatcher, settings.inspectFontPrograms, context));
+        }
+        return new PageChecks(pageChecks, false, context);
     }
 
-    private void validateFonts(Iterable<PDFont> fonter, List<PdfValidationError> errors) {
-        List<PDFont> nonSupportedFonts = fontValidator.findNonSupportedFonts(fonter);
-        if (!nonSupportedFonts.isEmpty()) {
-            errors.add(PdfValidationError.REFERENCES_INVALID_FONT);
-            if (LOG.isInfoEnabled()) {
-                LOG.debug("The PDF has references to invalid fonts: [{}]", nonSupportedFonts.stream().map(this::describe).collect(joining(", ")));
-            }
+    private PageChecks contentChecksUntilFirstError(PdfValidationSettings settings, ValidationContext context) {
+        List<PageCheck> pageChecks = new ArrayList<>(2);
+        if (settings.validateFonts) {
+            pageChecks.add(new PageFontsCheck(fontValidator, settings.fontNameMatcher, settings.inspectFontPrograms, context));
         }
+        if (settings.validateLeftMargin) {
+            pageChecks.add(new BarcodeAreaCheck(settings.pageGeometry, settings.barcodeAreaContent, settings.rasterMarginFallback, marginVerdictCache, context));
+        }
+        return new PageChecks(pageChecks, true, context);
     }
 
-    private String describe(PDFont font) {
-        return font.getSubType() + " '" + font.getName() + "'";
+    private List<PdfValidationError> failValidationIfEncrypted(List<PdfValidationError> errors) {
+        errors.add(PdfValidationError.PDF_IS_ENCRYPTED);
+        LOG.debug("The pdf is encrypted.");
+        return errors;
     }
 
     private void validatePdfVersion(float pdfVersion, List<PdfValidationError> errors) {
@@ -201,117 +595,45 @@ public class PdfValidator {
         }
     }
 
-    private boolean hasTextInBarcodeArea(PDPage pdPage, Bleed bleed) throws IOException {
-        SilentZone silentZone = new SilentZone(pdPage.getCropBox(), bleed);
-
-        Rectangle2D leftMarginBarcodeArea = new Rectangle2D.Double(silentZone.upperLeftCornerX,
-                silentZone.upperLeftCornerY, silentZone.silentZoneXSize, silentZone.silentZoneYSize);
-
-        return hasTextInArea(pdPage, leftMarginBarcodeArea);
-    }
-
-    private boolean hasInvalidDimensions(PDPage page, Bleed bleed) {
-        PDRectangle findCropBox = page.getCropBox();
-        long pageHeightInMillimeters = pointsTomm(findCropBox.getHeight());
-        long pageWidthInMillimeters = pointsTomm(findCropBox.getWidth());
-        if (!isPortraitA4(pageWidthInMillimeters, pageHeightInMillimeters, bleed) && !isLandscapeA4(pageWidthInMillimeters, pageHeightInMillimeters, bleed)) {
-            LOG.debug("One or more pages in the PDF has invalid dimensions.  Valid dimensions are width {} mm and height {} mm, alt " +
-                    "width {} mm og height {} mm with {} mm lower flexibility and {} upper flexibility. "
-                    + "Actual dimensions are width: {} mm and height: {} mm.",
-                    new Object[] { A4_WIDTH_MM, A4_HEIGHT_MM, A4_HEIGHT_MM, A4_WIDTH_MM, bleed.negativeBleedInMM,
-                            bleed.positiveBleedInMM, pageWidthInMillimeters, pageHeightInMillimeters });
-            return true;
-        } else {
-            return false;
+    private static PDDocument load(RandomAccessRead pdf, PdfValidationSettings.MemoryPolicy memoryPolicy, ValidationContext context) throws IOException {
+        context.checkpoint();
+        long loadStart = context.metrics != null ? System.nanoTime() : 0;
+        PDDocument pdDoc = Loader.loadPDF(pdf, memoryPolicy.streamCache());
+        if (context.metrics != null) {
+            context.metrics.phase(ValidationMetrics.Phase.PARSE, System.nanoTime() - loadStart);
         }
+        try {
+            context.checkpoint();
+        } catch (CancellationException e) {
+            pdDoc.close();
+            throw e;
+        }
+        return pdDoc;
     }
 
-    private static boolean isPortraitA4(long pageWidthInMillimeters, long pageHeightInMillimeters, Bleed bleed){
-        long minimumWidth = A4_WIDTH_MM - bleed.negativeBleedInMM;
-        long maximumWidth = A4_WIDTH_MM + bleed.positiveBleedInMM;
-        long minimumHeight = A4_HEIGHT_MM - bleed.negativeBleedInMM;
-        long maximumHeight = A4_HEIGHT_MM + bleed.positiveBleedInMM;
-        return pageWidthInMillimeters <= maximumWidth && pageWidthInMillimeters >= minimumWidth
-                && pageHeightInMillimeters <= maximumHeight && pageHeightInMillimeters >= minimumHeight;
-    }
-
-    private static boolean isLandscapeA4(long pageWidthInMillimeters, long pageHeightInMillimeters, Bleed bleed){
-        return isPortraitA4(pageHeightInMillimeters, pageWidthInMillimeters, bleed);
-    }
-
-    private boolean hasTextInArea(PDPage pdPage, Rectangle2D area) throws IOException {
-        boolean hasTextInArea = false;
-        final PDFTextStripperByArea stripper = new PDFTextStripperByArea();
-        stripper.addRegion("marginArea", area);
-        stripper.extractRegions(pdPage);
-        String text = stripper.getTextForRegion("marginArea");
-        if (text != null && !text.trim().isEmpty()) {
-            hasTextInArea = true;
+    private static long sizeInBytes(RandomAccessRead pdf) {
+        try {
+            return pdf.length();
+        } catch (IOException e) {
+            return -1;
         }
-        return hasTextInArea;
     }
 
-    private InputStream openFileAsInputStream(Path pdfFile) throws IOException {
-        return new BufferedInputStream(Files.newInputStream(pdfFile));
+    private static RandomAccessRead openFile(Path pdfFile) throws IOException {
+        if (Files.size(pdfFile) > Integer.MAX_VALUE) {
+            // a single mapped buffer can not address more than 2 GB
+            return new RandomAccessReadBufferedFile(pdfFile);
+        }
+        return new RandomAccessReadMemoryMappedFile(pdfFile);
     }
 
-    private static double mmToPoints(int sizeInMillimeters) {
+    static double mmToPoints(int sizeInMillimeters) {
         BigDecimal points = new BigDecimal(sizeInMillimeters * MM_TO_POINTS);
         points = points.setScale(1, RoundingMode.DOWN);
         return points.doubleValue();
     }
 
-    private static long pointsTomm(double sizeInPoints) {
+    static long pointsTomm(double sizeInPoints) {
         return Math.round(sizeInPoints / MM_TO_POINTS);
     }
-
-    private static class SilentZone {
-        public final double upperLeftCornerX;
-        public final double upperLeftCornerY;
-        public final double silentZoneXSize;
-        public final double silentZoneYSize;
-
-        private SilentZone(PDRectangle findCropBox, Bleed bleed) {
-            int pageHeightInMillimeters = (int)pointsTomm(findCropBox.getHeight());
-            int pageWidthInMillimeters = (int)pointsTomm(findCropBox.getWidth());
-            boolean isLandscape = isLandscapeA4(pageWidthInMillimeters, pageHeightInMillimeters, bleed);
-
-            this.upperLeftCornerX = upperLeftCornerX(isLandscape);
-            this.upperLeftCornerY = upperLeftCornerY(isLandscape, pageHeightInMillimeters);
-            this.silentZoneXSize = zoneXSize(isLandscape);
-            this.silentZoneYSize = zoneYSize(isLandscape);
-        }
-
-        private double upperLeftCornerX(boolean isLandscape){
-            if(isLandscape){
-                return mmToPoints(BARCODE_AREA_Y_POS_MM);
-            } else {
-                return mmToPoints(BARCODE_AREA_X_POS_MM);
-            }
-        }
-
-        private double upperLeftCornerY(boolean isLandscape, int pageHeightInMillimeters){
-            if(isLandscape){
-                return mmToPoints(pageHeightInMillimeters-BARCODE_AREA_WIDTH_MM);
-            } else {
-                return mmToPoints(BARCODE_AREA_Y_POS_MM);
-            }
-        }
-
-        private double zoneXSize(boolean isLandscape){
-            if(isLandscape){
-                return mmToPoints(BARCODE_AREA_HEIGHT_MM);
-            } else {
-                return mmToPoints(BARCODE_AREA_WIDTH_MM);
-            }
-        }
-
-        private double zoneYSize(boolean isLandscape){
-            if(isLandscape){
-                return mmToPoints(BARCODE_AREA_WIDTH_MM);
-            } else {
-                return mmToPoints(BARCODE_AREA_HEIGHT_MM);
-            }
-        }
-    }
 }
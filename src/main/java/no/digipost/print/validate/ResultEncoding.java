@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.Bleed;
+import no.digipost.print.validate.PdfValidationSettings.PaperFormat;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The binary representation of {@link PdfValidationResult}s in a {@link ValidationResultStore}: a version byte,
+ * the number of errors as an int, the code of each error in order, and then the number of pages, the bleed and the
+ * paper format. The codes of the errors are pinned in {@link #ERRORS_BY_CODE}, so results stored by earlier
+ * releases are decoded the same, regardless of the order of the constants of {@link PdfValidationError}.
+ */
+final class ResultEncoding {
+
+    private static final byte VERSION = 1;
+
+    /**
+     * The error of each code. Only ever append to this, as results stored with the existing codes must keep their meaning.
+     */
+    private static final PdfValidationError[] ERRORS_BY_CODE = {
+            PdfValidationError.PDF_IS_ENCRYPTED,
+            PdfValidationError.TOO_MANY_PAGES_FOR_AUTOMATED_PRINT,
+            PdfValidationError.UNSUPPORTED_PDF_VERSION_FOR_PRINT,
+            PdfValidationError.INSUFFICIENT_MARGIN_FOR_PRINT,
+            PdfValidationError.UNABLE_TO_VERIFY_SUITABLE_MARGIN_FOR_PRINT,
+            PdfValidationError.PDF_PARSE_ERROR,
+            PdfValidationError.PDF_PARSE_PAGE_ERROR,
+            PdfValidationError.UNSUPPORTED_DIMENSIONS,
+            PdfValidationError.REFERENCES_INVALID_FONT,
+            PdfValidationError.DOCUMENT_TOO_SMALL,
+            PdfValidationError.INVALID_PDF,
+            PdfValidationError.DOCUMENT_HAS_NO_PAGES,
+            PdfValidationError.VALIDATION_BUDGET_EXCEEDED,
+    };
+
+    private static final Map<PdfValidationError, Byte> CODES = new EnumMap<>(PdfValidationError.class);
+
+    static {
+        for (int code = 0; code < ERRORS_BY_CODE.length; code++) {
+            CODES.put(ERRORS_BY_CODE[code], (byte) code);
+        }
+    }
+
+    private ResultEncoding() {
+    }
+
+    static byte[] encode(PdfValidationResult result) {
+        ByteBuffer encoded = ByteBuffer.allocate(25 + result.errors.size())
+                .put(VERSION)
+                .putInt(result.errors.size());
+        for (PdfValidationError error : result.errors) {
+            Byte code = CODES.get(error);
+            if (code == null) {
+                throw new IllegalStateException("No code for validation error " + error.name());
+            }
+            encoded.put(code);
+        }
+        return encoded
+                .putInt(result.pages)
+                .putInt(result.bleed.positiveBleedInMM)
+                .putInt(result.bleed.negativeBleedInMM)
+                .putInt(result.paperFormat.widthInMM)
+                .putInt(result.paperFormat.heightInMM)
+                .array();
+    }
+
+    static PdfValidationResult decode(byte[] encodedResult) {
+        ByteBuffer encoded = ByteBuffer.wrap(encodedResult);
+        try {
+            byte version = encoded.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unknown encoding version " + version + " of validation result");
+            }
+            int numberOfErrors = encoded.getInt();
+            if (numberOfErrors < 0 || numberOfErrors > encoded.remaining()) {
+                throw new IllegalArgumentException("Invalid number of errors " + numberOfErrors + " in validation result of " + encodedResult.length + " bytes");
+            }
+            List<PdfValidationError> errors = new ArrayList<>(numberOfErrors);
+            for (int i = 0; i < numberOfErrors; i++) {
+                int code = encoded.get() & 0xff;
+                if (code >= ERRORS_BY_CODE.length) {
+                    throw new IllegalArgumentException("Unknown validation error " + code);
+                }
+                errors.add(ERRORS_BY_CODE[code]);
+            }
+            int pages = encoded.getInt();
+            Bleed bleed = new Bleed(encoded.getInt(), encoded.getInt());
+            PaperFormat paperFormat = new PaperFormat(encoded.getInt(), encoded.getInt());
+            if (encoded.hasRemaining()) {
+                throw new IllegalArgumentException(encoded.remaining() + " trailing bytes after validation result");
+            }
+            return PdfValidationResult.of(errors, pages, bleed, paperFormat, null);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated validation result of " + encodedResult.length + " bytes", e);
+        }
+    }
+}
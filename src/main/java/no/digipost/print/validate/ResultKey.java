@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Identifies the result of validating a document with some settings, by the SHA-256 hash of the document
+ * and the values of all the settings which may affect the result.
+ */
+final class ResultKey {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final byte[] sha256;
+    private final List<Object> settings;
+    private final int hashCode;
+
+    ResultKey(byte[] sha256, List<Object> settings) {
+        this.sha256 = sha256;
+        this.settings = settings;
+        this.hashCode = 31 * Arrays.hashCode(sha256) + settings.hashCode();
+    }
+
+    /**
+     * @return the key of the given document validated with the given settings. The document is read
+     *         from the start, and positioned at the start again afterwards.
+     */
+    static ResultKey of(RandomAccessRead pdf, PdfValidationSettings settings) throws IOException {
+        MessageDigest sha256 = sha256();
+        byte[] buffer = new byte[8 * 1024];
+        pdf.seek(0);
+        for (int read = pdf.read(buffer, 0, buffer.length); read > 0; read = pdf.read(buffer, 0, buffer.length)) {
+            sha256.update(buffer, 0, read);
+        }
+        pdf.seek(0);
+        return new ResultKey(sha256.digest(), settings.resultFingerprint());
+    }
+
+    /**
+     * @return the key as 64 hexadecimal digits, which are the same across restarts and nodes:
+     *         the SHA-256 hash of the hash of the document and the values of the settings
+     */
+    String toHex() {
+        MessageDigest key = sha256();
+        key.update(sha256);
+        key.update(settings.toString().getBytes(UTF_8));
+        byte[] digest = key.digest();
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every Java platform", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ResultKey)) {
+            return false;
+        }
+        ResultKey that = (ResultKey) o;
+        return hashCode == that.hashCode && Arrays.equals(sha256, that.sha256) && settings.equals(that.settings);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.Budget;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * The state of one validation which is shared by all the threads performing it, allowing it to be
+ * cancelled, keeping track of the work spent on it against its {@link Budget}, and collecting its metrics. The validation
+ * reaches a {@link #checkpoint() checkpoint} before parsing the document, and before checking each
+ * page, and reports the content stream operators it processes.
+ */
+final class ValidationContext {
+
+    private final Budget budget;
+    /**
+     * Collects the metrics of the validation, or {@code null} if metrics are not collected.
+     */
+    final ValidationMetrics.Recorder metrics;
+    private final AtomicLong contentStreamOperators = new AtomicLong();
+    private long deadline;
+    private volatile boolean cancelled;
+
+    ValidationContext(Budget budget, ValidationMetrics.Recorder metrics) {
+        this.budget = budget;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Start the clock of the {@link Budget#maxMillis time budget}. Must be invoked before the
+     * validation is split across several threads.
+     */
+    void start() {
+        if (budget.maxMillis != Long.MAX_VALUE) {
+            deadline = System.nanoTime() + MILLISECONDS.toNanos(budget.maxMillis);
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @throws CancellationException if the validation has been cancelled
+     * @throws BudgetExceeded if the validation has run past its deadline
+     */
+    void checkpoint() {
+        if (cancelled) {
+            throw new CancellationException("The validation was cancelled");
+        }
+        if (budget.maxMillis != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            throw new BudgetExceeded("The validation did not complete within " + budget.maxMillis + " ms");
+        }
+    }
+
+    /**
+     * Report content stream operators processed since the last report, which is also a {@link #checkpoint() checkpoint}.
+     *
+     * @throws BudgetExceeded if the validation has processed more operators than its budget allows
+     */
+    void processedContentStreamOperators(long operators) {
+        if (contentStreamOperators.addAndGet(operators) > budget.maxContentStreamOperators) {
+            throw new BudgetExceeded("The validation processed more than " + budget.maxContentStreamOperators + " content stream operators");
+        }
+        checkpoint();
+    }
+
+    /**
+     * @throws BudgetExceeded if the document has more objects than the budget allows
+     */
+    void documentObjects(long objects) {
+        if (objects > budget.maxObjects) {
+            throw new BudgetExceeded("The document has " + objects + " objects, more than the maximum " + budget.maxObjects);
+        }
+    }
+
+    /**
+     * @return the metrics of the validation, or {@code null} if metrics are not collected
+     */
+    ValidationMetrics completeMetrics() {
+        return metrics != null ? metrics.complete(contentStreamOperators.get()) : null;
+    }
+
+    /**
+     * The validation was stopped because it exceeded its {@link Budget}.
+     */
+    static final class BudgetExceeded extends CancellationException {
+        private static final long serialVersionUID = 1L;
+
+        BudgetExceeded(String message) {
+            super(message);
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+
+/**
+ * Emits JDK Flight Recorder events for validations and page checks. This is the Java 8 version, which does
+ * nothing. The multi-release JAR contains a version for Java 11 and later, in {@code src/main/java11},
+ * which emits the events when they are enabled in a recording.
+ * <p>
+ * An event is started by getting a handle, which is {@code null} when the event is not recorded, and given
+ * back when the event ends. The handle is an {@code Object}, as the JFR event types are not available here.
+ */
+final class ValidationEvents {
+
+    static Object documentStarted() {
+        return null;
+    }
+
+    static void documentValidated(Object event, long sizeInBytes, PdfValidationResult result) {
+    }
+
+    static Object pageCheckStarted() {
+        return null;
+    }
+
+    static void pageChecked(Object event, int pageIndex, PDPage page, PageCheck check) {
+    }
+
+    private ValidationEvents() {
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+/**
+ * Receives the result of each validation performed by a {@link PdfValidator#withMetrics(ValidationListener) validator
+ * with metrics enabled}, e.g. to record the {@link PdfValidationResult#metrics metrics} with a metrics library.
+ * <p>
+ * Invoked on the thread which performed the validation, so it should return quickly. Exceptions thrown by the
+ * listener are logged, and do not affect the validation.
+ */
+@FunctionalInterface
+public interface ValidationListener {
+
+    void validated(PdfValidationResult result);
+
+}
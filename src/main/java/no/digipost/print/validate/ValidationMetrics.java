@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where the time of one validation was spent, and how much work it did. Only collected by a
+ * {@link PdfValidator#withMetrics(ValidationListener) validator with metrics enabled}.
+ * <p>
+ * The durations of the page checks are summed over all the threads checking pages, so when
+ * {@link PdfValidator#PdfValidator(java.util.concurrent.Executor, int) checking pages concurrently},
+ * they may add up to more than the {@link #totalNanos total duration} of the validation.
+ */
+public final class ValidationMetrics {
+
+    public enum Phase {
+        /**
+         * Reading the structure of the document, and loading it with PDFBox.
+         */
+        PARSE,
+        DIMENSIONS,
+        MARGIN,
+        FONTS
+    }
+
+    public final long totalNanos;
+    public final long parseNanos;
+    public final long dimensionsNanos;
+    public final long marginNanos;
+    public final long fontsNanos;
+    /**
+     * The number of pages checked. When {@link PdfValidationSettings#failFast failing fast}, the pages are checked twice:
+     * first their dimensions, and then their content.
+     */
+    public final long pagesChecked;
+    /**
+     * The encoded length of the content streams of the pages checked for text in the barcode area,
+     * except the pages which were already checked.
+     */
+    public final long contentStreamBytes;
+    public final long contentStreamOperators;
+    /**
+     * The number of fonts which were loaded and classified.
+     */
+    public final long fontsInspected;
+    /**
+     * The number of references to fonts which were already classified, in the same document or,
+     * with a {@link FontVerdictCache}, in another document.
+     */
+    public final long fontCacheHits;
+    /**
+     * The number of pages and form XObjects which were not checked for text in the barcode area, as a page or form
+     * with the same content was already checked, in the same document or, with a {@link MarginVerdictCache},
+     * in another document.
+     */
+    public final long marginCacheHits;
+
+    private ValidationMetrics(long totalNanos, long[] phaseNanos, long pagesChecked, long contentStreamBytes, long contentStreamOperators,
+                              long fontsInspected, long fontCacheHits, long marginCacheHits) {
+        this.totalNanos = totalNanos;
+        this.parseNanos = phaseNanos[Phase.PARSE.ordinal()];
+        this.dimensionsNanos = phaseNanos[Phase.DIMENSIONS.ordinal()];
+        this.marginNanos = phaseNanos[Phase.MARGIN.ordinal()];
+        this.fontsNanos = phaseNanos[Phase.FONTS.ordinal()];
+        this.pagesChecked = pagesChecked;
+        this.contentStreamBytes = contentStreamBytes;
+        this.contentStreamOperators = contentStreamOperators;
+        this.fontsInspected = fontsInspected;
+        this.fontCacheHits = fontCacheHits;
+        this.marginCacheHits = marginCacheHits;
+    }
+
+    public long nanos(Phase phase) {
+        switch (phase) {
+            case PARSE: return parseNanos;
+            case DIMENSIONS: return dimensionsNanos;
+            case MARGIN: return marginNanos;
+            case FONTS: return fontsNanos;
+            default: throw new IllegalArgumentException(String.valueOf(phase));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[total=" + totalNanos / 1000 + " µs, parse=" + parseNanos / 1000 + " µs, dimensions=" + dimensionsNanos / 1000
+                + " µs, margin=" + marginNanos / 1000 + " µs, fonts=" + fontsNanos / 1000 + " µs, pages=" + pagesChecked
+                + ", contentStreamBytes=" + contentStreamBytes + ", contentStreamOperators=" + contentStreamOperators
+                + ", fontsInspected=" + fontsInspected + ", fontCacheHits=" + fontCacheHits + ", marginCacheHits=" + marginCacheHits + "]";
+    }
+
+
+    /**
+     * Collects the metrics of one validation, from all the threads performing it.
+     */
+    static final class Recorder {
+
+        private final long startNanos = System.nanoTime();
+        private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+        private final LongAdder pagesChecked = new LongAdder();
+        private final LongAdder contentStreamBytes = new LongAdder();
+        private final LongAdder fontsInspected = new LongAdder();
+        private final LongAdder fontCacheHits = new LongAdder();
+        private final LongAdder marginCacheHits = new LongAdder();
+
+        Recorder() {
+            for (int i = 0; i < phaseNanos.length; i++) {
+                phaseNanos[i] = new LongAdder();
+            }
+        }
+
+        void phase(Phase phase, long nanos) {
+            phaseNanos[phase.ordinal()].add(nanos);
+        }
+
+        void pageChecked() {
+            pagesChecked.increment();
+        }
+
+        void contentStreamBytes(long bytes) {
+            contentStreamBytes.add(bytes);
+        }
+
+        void fontInspected() {
+            fontsInspected.increment();
+        }
+
+        void fontCacheHits(int hits) {
+            fontCacheHits.add(hits);
+        }
+
+        void marginCacheHit() {
+            marginCacheHits.increment();
+        }
+
+        ValidationMetrics complete(long contentStreamOperators) {
+            long[] nanos = new long[phaseNanos.length];
+            for (int i = 0; i < nanos.length; i++) {
+                nanos[i] = phaseNanos[i].sum();
+            }
+            return new ValidationMetrics(System.nanoTime() - startNanos, nanos, pagesChecked.sum(), contentStreamBytes.sum(),
+                    contentStreamOperators, fontsInspected.sum(), fontCacheHits.sum(), marginCacheHits.sum());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded cache of validation results, which may be shared by any number of {@link PdfValidator validators}
+ * and threads. Senders often send byte-identical documents again, e.g. when retrying, or when the same
+ * attachment is sent to many recipients, and the result for such a document is then found by hashing its
+ * content instead of parsing and validating it again.
+ * <p>
+ * Results are identified by the SHA-256 hash of the document and the settings it was validated with,
+ * and expire after a fixed time to live. When the cache is full, the oldest result is evicted.
+ * Results from the cache have no {@link PdfValidationResult#metrics metrics}, and are not given to the
+ * {@link ValidationListener listener} of the validator. Results of validations which exceeded their
+ * {@link PdfValidationSettings#budget budget} are not cached, as they depend on the time available.
+ */
+public final class ValidationResultCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final int maxSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoTime;
+    private final LinkedHashMap<ResultKey, CachedResult> resultsByKey = new LinkedHashMap<>();
+    private long hits;
+    private long misses;
+
+    public ValidationResultCache(Duration timeToLive) {
+        this(DEFAULT_MAX_SIZE, timeToLive);
+    }
+
+    /**
+     * @param maxSize the maximum number of results to keep
+     * @param timeToLive for how long a result is kept after the document was validated
+     */
+    public ValidationResultCache(int maxSize, Duration timeToLive) {
+        this(maxSize, timeToLive, System::nanoTime);
+    }
+
+    ValidationResultCache(int maxSize, Duration timeToLive, LongSupplier nanoTime) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, was " + maxSize);
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("timeToLive must be positive, was " + timeToLive);
+        }
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @return the number of documents found in the cache
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of documents which had to be validated, as they were not in the cache
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of documents found in the cache, or {@code 0} if no documents have been looked up
+     */
+    public synchronized double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return the number of results currently in the cache, including any expired results not yet evicted
+     */
+    public synchronized int size() {
+        return resultsByKey.size();
+    }
+
+    public synchronized void clear() {
+        resultsByKey.clear();
+    }
+
+    synchronized PdfValidationResult get(ResultKey key) {
+        CachedResult cached = resultsByKey.get(key);
+        if (cached != null && cached.expiresAtNanos - nanoTime.getAsLong() <= 0) {
+            resultsByKey.remove(key);
+            cached = null;
+        }
+        if (cached != null) {
+            hits++;
+            return cached.result;
+        } else {
+            misses++;
+            return null;
+        }
+    }
+
+    synchronized void put(ResultKey key, PdfValidationResult result) {
+        long now = nanoTime.getAsLong();
+        // results are kept in the order they were put, which is also the order they expire in
+        resultsByKey.remove(key);
+        PdfValidationResult withoutMetrics = result.metrics != null ? PdfValidationResult.of(result.errors, result.pages, result.bleed, result.paperFormat, null) : result;
+        resultsByKey.put(key, new CachedResult(withoutMetrics, now + timeToLiveNanos));
+        Iterator<CachedResult> oldest = resultsByKey.values().iterator();
+        while (oldest.hasNext()) {
+            CachedResult cached = oldest.next();
+            if (resultsByKey.size() > maxSize || cached.expiresAtNanos - now <= 0) {
+                oldest.remove();
+            } else {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "[size=" + resultsByKey.size() + ", maxSize=" + maxSize + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+
+
+    private static final class CachedResult {
+        final PdfValidationResult result;
+        final long expiresAtNanos;
+
+        CachedResult(PdfValidationResult result, long expiresAtNanos) {
+            this.result = result;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import java.io.IOException;
+
+/**
+ * Stores validation results beyond the lifetime of a {@link PdfValidator}, e.g. on disk, so they survive
+ * restarts, or in a store shared by several nodes. A validator with a {@link PdfValidator#withResultStore(ValidationResultStore)
+ * result store} looks up each document in the store before validating it, and puts the result of each
+ * validation in the store.
+ * <p>
+ * Results are identified by a key of 64 hexadecimal digits, derived from the SHA-256 hash of the document
+ * and the settings it was validated with. {@link #encode(PdfValidationResult)} and {@link #decode(byte[])}
+ * give a compact binary representation of a result for storing it. Implementations must be thread-safe.
+ *
+ * @see FileValidationResultStore
+ */
+public interface ValidationResultStore {
+
+    /**
+     * @return the stored result for the given key, or {@code null} if there is none
+     */
+    PdfValidationResult get(String key) throws IOException;
+
+    void put(String key, PdfValidationResult result) throws IOException;
+
+
+    /**
+     * Encodes the errors, number of pages, bleed and paper format of a result. The {@link PdfValidationResult#metrics metrics}
+     * are not included.
+     *
+     * @return the result in 25 bytes, and one more byte per error
+     */
+    static byte[] encode(PdfValidationResult result) {
+        return ResultEncoding.encode(result);
+    }
+
+    /**
+     * @return the result {@link #encode(PdfValidationResult) encoded} in the given bytes
+     * @throws IllegalArgumentException if the bytes are not an encoded result
+     */
+    static PdfValidationResult decode(byte[] encodedResult) {
+        return ResultEncoding.decode(encodedResult);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDTrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static no.digipost.print.validate.PdfValidator.mmToPoints;
+
+/**
+ * Generates the sample document validated when {@link PdfValidator#warmUp() warming up} a validator.
+ * The pages exercise the paths of a real validation: portrait and landscape A4 pages, text and graphics
+ * outside the barcode area, text inside the barcode area, and standard fonts as well as a font which
+ * is neither embedded nor supported.
+ */
+final class WarmUpDocument {
+
+    static byte[] generate() {
+        try (PDDocument document = new PDDocument()) {
+            PDFont helvetica = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            PDFont times = new PDType1Font(Standard14Fonts.FontName.TIMES_ROMAN);
+            PDFont notEmbedded = notEmbeddedTrueTypeFont("Cambria");
+
+            PDPage portrait = new PDPage(PDRectangle.A4);
+            document.addPage(portrait);
+            try (PDPageContentStream content = new PDPageContentStream(document, portrait)) {
+                text(content, helvetica, 100, 700, "Printability");
+                text(content, times, 100, 680, "Validator");
+                content.addRect(100, 500, 200, 100);
+                content.fill();
+                content.moveTo(100, 450);
+                content.lineTo(400, 450);
+                content.stroke();
+            }
+
+            PDPage textInBarcodeArea = new PDPage(PDRectangle.A4);
+            document.addPage(textInBarcodeArea);
+            try (PDPageContentStream content = new PDPageContentStream(document, textInBarcodeArea)) {
+                text(content, helvetica, 100, 700, "Printability");
+                text(content, helvetica, (float) mmToPoints(5), PDRectangle.A4.getHeight() - (float) mmToPoints(120), "Barcode");
+            }
+
+            // written without PDPageContentStream, which logs a warning when showing text with a font which is not embedded
+            PDPage landscape = new PDPage(new PDRectangle(PDRectangle.A4.getHeight(), PDRectangle.A4.getWidth()));
+            document.addPage(landscape);
+            PDResources resources = new PDResources();
+            landscape.setResources(resources);
+            String content = "BT /" + resources.add(times).getName() + " 12 Tf 200 400 Td (Printability) Tj ET\n"
+                    + "BT /" + resources.add(notEmbedded).getName() + " 12 Tf 200 380 Td (Validator) Tj ET\n";
+            landscape.setContents(new PDStream(document, new ByteArrayInputStream(content.getBytes(US_ASCII))));
+
+            ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+            document.save(pdf);
+            return pdf.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to generate the document for warming up the validator: " + e.getMessage(), e);
+        }
+    }
+
+    private static PDFont notEmbeddedTrueTypeFont(String name) throws IOException {
+        COSDictionary fontDescriptor = new COSDictionary();
+        fontDescriptor.setItem(COSName.TYPE, COSName.FONT_DESC);
+        fontDescriptor.setName(COSName.FONT_NAME, name);
+        fontDescriptor.setInt(COSName.FLAGS, 32);
+        COSDictionary font = new COSDictionary();
+        font.setItem(COSName.TYPE, COSName.FONT);
+        font.setItem(COSName.SUBTYPE, COSName.TRUE_TYPE);
+        font.setName(COSName.BASE_FONT, name);
+        font.setItem(COSName.ENCODING, COSName.WIN_ANSI_ENCODING);
+        font.setItem(COSName.FONT_DESC, fontDescriptor);
+        return new PDTrueTypeFont(font);
+    }
+
+    private static void text(PDPageContentStream content, PDFont font, float x, float y, String text) throws IOException {
+        content.beginText();
+        content.setFont(font, 12);
+        content.newLineAtOffset(x, y);
+        content.showText(text);
+        content.endText();
+    }
+
+    private WarmUpDocument() {
+    }
+}
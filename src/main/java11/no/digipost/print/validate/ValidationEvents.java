@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Emits JDK Flight Recorder events for validations and page checks. The events are only allocated
+ * when they are enabled in a recording.
+ * <p>
+ * This is the Java 11 version of the class, see {@code src/main/java} for the Java 8 version.
+ */
+final class ValidationEvents {
+
+    private static final DocumentValidation DOCUMENT_VALIDATION = new DocumentValidation();
+    private static final PageCheckEvent PAGE_CHECK = new PageCheckEvent();
+
+    static Object documentStarted() {
+        if (!DOCUMENT_VALIDATION.isEnabled()) {
+            return null;
+        }
+        DocumentValidation event = new DocumentValidation();
+        event.begin();
+        return event;
+    }
+
+    static void documentValidated(Object started, long sizeInBytes, PdfValidationResult result) {
+        if (started == null) {
+            return;
+        }
+        DocumentValidation event = (DocumentValidation) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.sizeInBytes = sizeInBytes;
+            event.pages = result.pages;
+            event.okForPrint = result.okForPrint;
+            event.errors = result.errors.stream().map(Enum::name).collect(joining(", "));
+            event.commit();
+        }
+    }
+
+    static Object pageCheckStarted() {
+        if (!PAGE_CHECK.isEnabled()) {
+            return null;
+        }
+        PageCheckEvent event = new PageCheckEvent();
+        event.begin();
+        return event;
+    }
+
+    static void pageChecked(Object started, int pageIndex, PDPage page, PageCheck check) {
+        if (started == null) {
+            return;
+        }
+        PageCheckEvent event = (PageCheckEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.pageIndex = pageIndex;
+            event.check = check.phase().name();
+            event.contentStreamBytes = BarcodeAreaContentDetector.contentStreamLength(page);
+            event.hasErrors = check.hasErrors();
+            event.commit();
+        }
+    }
+
+    @Name("no.digipost.print.validate.DocumentValidation")
+    @Label("PDF Validation")
+    @Category({"Digipost", "Printability Validator"})
+    @Description("The validation of one PDF document")
+    static final class DocumentValidation extends Event {
+        @Label("Size")
+        @DataAmount(DataAmount.BYTES)
+        long sizeInBytes;
+
+        @Label("Pages")
+        int pages;
+
+        @Label("OK for Print")
+        boolean okForPrint;
+
+        @Label("Errors")
+        String errors;
+    }
+
+    @Name("no.digipost.print.validate.PageCheck")
+    @Label("PDF Page Check")
+    @Category({"Digipost", "Printability Validator"})
+    @Description("One check of one page of a PDF document")
+    @StackTrace(false)
+    static final class PageCheckEvent extends Event {
+        @Label("Page Index")
+        int pageIndex;
+
+        @Label("Check")
+        String check;
+
+        @Label("Content Stream Size")
+        @DataAmount(DataAmount.BYTES)
+        long contentStreamBytes;
+
+        @Label("Has Errors")
+        @Description("Whether the check has found errors on this or any of the previous pages it has checked")
+        boolean hasErrors;
+    }
+
+    private ValidationEvents() {
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.BarcodeAreaContent;
+import no.digipost.print.validate.PdfValidationSettings.Budget;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static no.digipost.print.validate.PdfValidationError.INSUFFICIENT_MARGIN_FOR_PRINT;
+import static no.digipost.print.validate.PdfValidationError.UNABLE_TO_VERIFY_SUITABLE_MARGIN_FOR_PRINT;
+import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.LINE_IN_BARCODE_AREA;
+import static no.digipost.print.validate.TestPdfs.LOGO_IN_BARCODE_AREA;
+import static no.digipost.print.validate.TestPdfs.WHITE_BACKGROUND;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+public class BarcodeAreaRasterizerTest {
+
+    private static final BarcodeAreaContent IMAGES = new BarcodeAreaContent(false, true, false);
+    private static final BarcodeAreaContent VECTOR_GRAPHICS = new BarcodeAreaContent(false, false, true);
+
+    @Test
+    public void rendersOnlyTheConfiguredKindsOfContent() throws IOException {
+        assertThat(renderedContentInBarcodeArea(pdfBytes("/pdf/a4-left-margin-14_5mm.pdf"), BarcodeAreaContent.TEXT), is(true));
+        assertThat(renderedContentInBarcodeArea(pdfBytes("/pdf/a4-left-margin-20mm_v17.pdf"), BarcodeAreaContent.ALL), is(false));
+        assertThat(renderedContentInBarcodeArea(LOGO_IN_BARCODE_AREA, BarcodeAreaContent.TEXT), is(false));
+        assertThat(renderedContentInBarcodeArea(LOGO_IN_BARCODE_AREA, IMAGES), is(true));
+        assertThat(renderedContentInBarcodeArea(LINE_IN_BARCODE_AREA, IMAGES), is(false));
+        assertThat(renderedContentInBarcodeArea(LINE_IN_BARCODE_AREA, VECTOR_GRAPHICS), is(true));
+        assertThat(renderedContentInBarcodeArea(WHITE_BACKGROUND, BarcodeAreaContent.ALL), is(false));
+    }
+
+    @Test
+    public void countsRenderedOperatorsTowardsTheBudget() throws IOException {
+        BarcodeAreaRasterizer rasterizer = new BarcodeAreaRasterizer(new ValidationContext(new Budget(Long.MAX_VALUE, 1, Long.MAX_VALUE), null), VECTOR_GRAPHICS);
+        try (PDDocument document = Loader.loadPDF(LINE_IN_BARCODE_AREA)) {
+            rasterizer.setDocument(document);
+            assertThat(tripsBudget(() -> rasterizer.hasContentInArea(0, CHECK_ALL.pageGeometry.barcodeArea(document.getPage(0).getCropBox()))), is(true));
+        }
+    }
+
+    @Test
+    public void reportsPageAsUnverifiableWhenRenderingAlsoFails() throws IOException {
+        byte[] pdf = pageShowingTextInUnloadableFont();
+        PdfValidationSettings marginOnly = new PdfValidationSettings(true, false, false, false);
+        assertThat(CHECK_ALL.rasterMarginFallback, is(false));
+        assertThat(new PdfValidator().validate(pdf, marginOnly).errors, contains(UNABLE_TO_VERIFY_SUITABLE_MARGIN_FOR_PRINT));
+        assertThat(new PdfValidator().validate(pdf, marginOnly.withRasterMarginFallback(true)).errors, contains(UNABLE_TO_VERIFY_SUITABLE_MARGIN_FOR_PRINT));
+        assertThat(new PdfValidator().validate(pdfBytes("/pdf/a4-left-margin-14_5mm.pdf"), marginOnly.withRasterMarginFallback(true)).errors,
+                contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+    }
+
+    private interface Rendering {
+        boolean render() throws IOException;
+    }
+
+    private static boolean tripsBudget(Rendering rendering) throws IOException {
+        try {
+            rendering.render();
+            return false;
+        } catch (ValidationContext.BudgetExceeded e) {
+            return true;
+        }
+    }
+
+    private static boolean renderedContentInBarcodeArea(byte[] pdf, BarcodeAreaContent content) throws IOException {
+        BarcodeAreaRasterizer rasterizer = new BarcodeAreaRasterizer(new ValidationContext(Budget.UNLIMITED, null), content);
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            rasterizer.setDocument(document);
+            return rasterizer.hasContentInArea(0, CHECK_ALL.pageGeometry.barcodeArea(document.getPage(0).getCropBox()));
+        }
+    }
+
+    /**
+     * @return a page showing text with a composite font without descendant font, which neither the content detector nor the renderer can load
+     */
+    private static byte[] pageShowingTextInUnloadableFont() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            COSDictionary font = new COSDictionary();
+            font.setItem(COSName.TYPE, COSName.FONT);
+            font.setItem(COSName.SUBTYPE, COSName.TYPE0);
+            COSDictionary fonts = new COSDictionary();
+            fonts.setItem(COSName.getPDFName("F1"), font);
+            PDResources resources = new PDResources();
+            resources.getCOSObject().setItem(COSName.FONT, fonts);
+            page.setResources(resources);
+            PDStream content = new PDStream(document);
+            try (OutputStream out = content.createOutputStream()) {
+                out.write("BT /F1 12 Tf 100 700 Td (Text) Tj ET".getBytes(US_ASCII));
+            }
+            page.setContents(content);
+            return TestPdfs.bytes(document);
+        }
+    }
+}
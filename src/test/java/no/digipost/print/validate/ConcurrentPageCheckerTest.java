@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.Budget;
+import no.digipost.print.validate.PdfValidationSettings.MemoryPolicy;
+import no.digipost.print.validate.PdfValidationSettings.PaperFormat;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static no.digipost.print.validate.PdfValidationError.REFERENCES_INVALID_FONT;
+import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.corpus;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class ConcurrentPageCheckerTest {
+
+    private static final PdfValidator pdfValidator = new PdfValidator();
+
+    @Test
+    public void checksPagesConcurrentlyWithSameResultAsSequentially() throws IOException {
+        ExecutorService pageExecutor = Executors.newFixedThreadPool(3);
+        try {
+            PdfValidator concurrentValidator = new PdfValidator(pageExecutor, 4);
+            byte[] errorOnEveryPage = pdfBytes("/pdf/21-pages-and-bogus-fonts.pdf");
+            PdfValidationSettings fontsOnly = new PdfValidationSettings(false, true, false, false);
+            List<PdfValidationError> fromEveryRange = concurrentValidator.validate(errorOnEveryPage, fontsOnly).errors;
+            assertThat(fromEveryRange, hasSize(21));
+            assertThat(fromEveryRange, everyItem(is(REFERENCES_INVALID_FONT)));
+
+            for (PdfValidationSettings settings : asList(CHECK_ALL, new PdfValidationSettings(true, false, false, true), CHECK_ALL.withFailFast(true))) {
+                for (Path pdf : corpus()) {
+                    PdfValidationResult sequentially = pdfValidator.validate(pdf, settings);
+                    assertThat(pdf.getFileName() + " from file", concurrentValidator.validate(pdf, settings).errors, is(sequentially.errors));
+                    assertThat(pdf.getFileName() + " from bytes", concurrentValidator.validate(Files.readAllBytes(pdf), settings).errors, is(sequentially.errors));
+                }
+            }
+        } finally {
+            pageExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void checksDocumentsWithFewPagesOnCallingThreadOnly() {
+        List<Runnable> submittedRanges = new ArrayList<>();
+        PdfValidator concurrentValidator = new PdfValidator(submittedRanges::add, 4);
+        assertThat(concurrentValidator.validate(pdfBytes("/pdf/a4-left-margin-20mm_v17.pdf"), CHECK_ALL).errors, empty());
+        assertThat(submittedRanges, empty());
+    }
+
+    @Test
+    public void checksPagesOnCallingThreadWhenExecutorRejectsThem() {
+        ExecutorService shutDown = Executors.newSingleThreadExecutor();
+        shutDown.shutdown();
+        byte[] pdf = pdfBytes("/pdf/21-pages-and-bogus-fonts.pdf");
+        PdfValidationSettings settings = new PdfValidationSettings(true, true, false, true);
+        List<PdfValidationError> sequentially = pdfValidator.validate(pdf, settings).errors;
+        assertThat(sequentially, hasSize(21));
+        assertThat(new PdfValidator(shutDown, 4).validate(pdf, settings).errors, is(sequentially));
+    }
+
+    @Test
+    public void stopsCheckingFollowingPageRangesWhenOutcomeIsKnown() throws IOException {
+        byte[] pdf = pdfBytes("/pdf/a4-21pages.pdf");
+        PageGeometry letter = CHECK_ALL.withPaperFormat(PaperFormat.LETTER).pageGeometry;
+        ValidationContext context = new ValidationContext(Budget.UNLIMITED, new ValidationMetrics.Recorder());
+        List<PageChecks> ranges = new ArrayList<>();
+        Supplier<PageChecks> newPageChecks = () -> {
+            PageChecks pageChecks = new PageChecks(singletonList(new PageDimensionsCheck(letter)), true, context);
+            ranges.add(pageChecks);
+            return pageChecks;
+        };
+        List<Runnable> pendingRanges = new ArrayList<>();
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            PageChecks firstRange = new ConcurrentPageChecker(pendingRanges::add, 3)
+                    .checkPages(document, () -> new RandomAccessReadBuffer(pdf), MemoryPolicy.MAIN_MEMORY_ONLY, newPageChecks);
+            assertThat(firstRange.isConclusive(), is(true));
+            assertThat(ranges, hasSize(3));
+            for (PageChecks followingRange : ranges.subList(0, 2)) {
+                assertThat(followingRange.isStopped(), is(true));
+                // as if the task of the range was already running when the outcome became known
+                followingRange.checkPages(document, 0, Integer.MAX_VALUE);
+            }
+        }
+        assertThat("only the first page is checked", context.completeMetrics().pagesChecked, is(1L));
+    }
+
+    @Test
+    public void waitsForRangesBeingCheckedWhenOutcomeIsKnown() throws IOException {
+        byte[] pdf = pdfBytes("/pdf/a4-21pages.pdf");
+        ValidationContext context = new ValidationContext(Budget.UNLIMITED, null);
+        CountDownLatch followingRangeStarted = new CountDownLatch(1);
+        AtomicInteger pagesBeingChecked = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            PageChecks firstRange = new ConcurrentPageChecker(executor, 2).checkPages(document, () -> new RandomAccessReadBuffer(pdf), MemoryPolicy.MAIN_MEMORY_ONLY,
+                    () -> new PageChecks(singletonList(new ErrorOnFirstPage(followingRangeStarted, pagesBeingChecked)), true, context));
+            assertThat(firstRange.isConclusive(), is(true));
+            assertThat("pages being checked when the validation returns", pagesBeingChecked.get(), is(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Finds an error on the first page once the following range has started, and spends a while on each following page.
+     */
+    private static final class ErrorOnFirstPage implements PageCheck {
+        private final CountDownLatch followingRangeStarted;
+        private final AtomicInteger pagesBeingChecked;
+        private boolean error;
+
+        ErrorOnFirstPage(CountDownLatch followingRangeStarted, AtomicInteger pagesBeingChecked) {
+            this.followingRangeStarted = followingRangeStarted;
+            this.pagesBeingChecked = pagesBeingChecked;
+        }
+
+        @Override
+        public ValidationMetrics.Phase phase() {
+            return ValidationMetrics.Phase.DIMENSIONS;
+        }
+
+        @Override
+        public void check(int pageIndex, PDPage page, PDRectangle cropBox) throws IOException {
+            pagesBeingChecked.incrementAndGet();
+            try {
+                if (pageIndex == 0) {
+                    error = followingRangeStarted.await(10, SECONDS);
+                } else {
+                    followingRangeStarted.countDown();
+                    Thread.sleep(200);
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException(e.getMessage());
+            } finally {
+                pagesBeingChecked.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean isConclusive() {
+            return error;
+        }
+
+        @Override
+        public boolean hasErrors() {
+            return error;
+        }
+
+        @Override
+        public void merge(PageCheck followingPages) {
+            error |= ((ErrorOnFirstPage) followingPages).error;
+        }
+
+        @Override
+        public void addErrors(List<PdfValidationError> errors) {
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static no.digipost.print.validate.PdfValidationError.INSUFFICIENT_MARGIN_FOR_PRINT;
+import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FileValidationResultStoreTest {
+
+    private static final byte[] NARROW_MARGIN = pdfBytes("/pdf/a4-left-margin-14_5mm.pdf");
+
+    @Test
+    public void keepsResultsAcrossValidators(@TempDir Path storeDirectory) throws IOException {
+        List<PdfValidationResult> validated = new ArrayList<>();
+        new PdfValidator().withMetrics(validated::add).withResultStore(new FileValidationResultStore(storeDirectory)).validate(NARROW_MARGIN, CHECK_ALL);
+        assertThat(storedResults(storeDirectory), hasSize(1));
+
+        PdfValidationResult stored = new PdfValidator().withMetrics(validated::add)
+                .withResultStore(new FileValidationResultStore(storeDirectory, Duration.ofHours(1))).validate(NARROW_MARGIN, CHECK_ALL);
+        assertThat(stored.errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+        assertThat(stored.metrics, nullValue());
+        assertThat("the document found in the store is not validated again", validated, hasSize(1));
+    }
+
+    @Test
+    public void validatesAgainWhenStoredResultHasExpired(@TempDir Path storeDirectory) throws IOException {
+        List<PdfValidationResult> validated = new ArrayList<>();
+        PdfValidator storingValidator = new PdfValidator().withMetrics(validated::add).withResultStore(new FileValidationResultStore(storeDirectory, Duration.ofHours(1)));
+        storingValidator.validate(NARROW_MARGIN, CHECK_ALL);
+        Path storedResult = storedResults(storeDirectory).get(0);
+        Files.setLastModifiedTime(storedResult, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+        assertThat(storingValidator.validate(NARROW_MARGIN, CHECK_ALL).errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+        assertThat(validated, hasSize(2));
+    }
+
+    @Test
+    public void validatesAgainWhenStoredResultIsInvalid(@TempDir Path storeDirectory) throws IOException {
+        List<PdfValidationResult> validated = new ArrayList<>();
+        PdfValidator storingValidator = new PdfValidator().withMetrics(validated::add).withResultStore(new FileValidationResultStore(storeDirectory));
+        storingValidator.validate(NARROW_MARGIN, CHECK_ALL);
+        Files.write(storedResults(storeDirectory).get(0), new byte[] {1, 2, 3});
+
+        assertThat(storingValidator.validate(NARROW_MARGIN, CHECK_ALL).errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+        assertThat(validated, hasSize(2));
+        assertThat("the invalid result is replaced", new FileValidationResultStore(storeDirectory).get(storedResults(storeDirectory).get(0).getFileName().toString()).errors,
+                contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+    }
+
+    @Test
+    public void rejectsKeysWhichAreNotHexadecimalDigests(@TempDir Path storeDirectory) throws IOException {
+        FileValidationResultStore store = new FileValidationResultStore(storeDirectory);
+        assertThrows(IllegalArgumentException.class, () -> store.get("../../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> new FileValidationResultStore(storeDirectory, Duration.ZERO));
+        assertThat(storedResults(storeDirectory), empty());
+    }
+
+    private static List<Path> storedResults(Path storeDirectory) throws IOException {
+        try (Stream<Path> files = Files.walk(storeDirectory)) {
+            return files.filter(Files::isRegularFile).collect(toList());
+        }
+    }
+}
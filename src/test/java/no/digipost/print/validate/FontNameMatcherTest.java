@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class FontNameMatcherTest {
+
+    @Test
+    public void matchesFontNamesAsWhenRemovingDashesAndWhitespaceAndComparingInUpperCase() {
+        List<String> supportedFonts = asList("Arial", "Times", "Times-New Roman", "Helvetica", "vetic", "Ø-Sans", "Courier New");
+        FontNameMatcher matcher = FontNameMatcher.of(supportedFonts);
+        for (String fontName : asList("ABCDEF+Arial-BoldMT", "Times New-Roman", "TimesNewRomanPSMT", "Helvet\tica", "HELVETIC", "øsans",
+                "Courier", "CourierNew", "Tim es", "TimTimes", "Cambria", "ZapfDingbats", "", "-")) {
+            String normalized = fontName.replaceAll("[\\-\\s]+", "").toUpperCase(Locale.ROOT);
+            boolean expected = supportedFonts.stream().anyMatch(name -> normalized.contains(name.replaceAll("[\\-\\s]+", "").toUpperCase(Locale.ROOT)));
+            assertThat(fontName, matcher.matches(fontName), is(expected));
+        }
+        assertThat(matcher.matches(null), is(false));
+    }
+
+    @Test
+    public void findsNamesStartingWithinPartialMatchOfAnotherName() {
+        FontNameMatcher matcher = FontNameMatcher.of(asList("Arial", "Times New Roman", "New Century"));
+        assertThat(matcher.matches("AriAriaArial"), is(true));
+        assertThat(matcher.matches("TimesNewCentury"), is(true));
+        assertThat(matcher.matches("TimesNewRomaTimesNewRoman"), is(true));
+        assertThat(matcher.matches("TimesNewRomNewCentur"), is(false));
+    }
+
+    @Test
+    public void matchesNamesWithCharactersOutsideAscii() {
+        FontNameMatcher matcher = FontNameMatcher.of(asList("Ø-Sans", "Grünewald"));
+        assertThat(matcher.matches("ABCDEF+øsans-Bold"), is(true));
+        assertThat(matcher.matches("GRÜNEWALD"), is(true));
+        assertThat(matcher.matches("Grunewald"), is(false));
+        assertThat(matcher.matches("O-Sans€"), is(false));
+    }
+
+    @Test
+    public void emptySupportedNameMatchesAnyFontAndNoSupportedNamesMatchNoFont() {
+        assertThat(FontNameMatcher.of(asList("Arial", "")).matches("Cambria"), is(true));
+        assertThat(FontNameMatcher.of(asList("Arial", " - ")).matches("Cambria"), is(true));
+        assertThat(FontNameMatcher.of(Collections.<String>emptySet()).matches("Arial"), is(false));
+    }
+}
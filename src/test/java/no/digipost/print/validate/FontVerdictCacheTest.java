@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static no.digipost.print.validate.PdfValidationError.REFERENCES_INVALID_FONT;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class FontVerdictCacheTest {
+
+    private static final PdfValidationSettings FONTS_ONLY = new PdfValidationSettings(false, true, false, false);
+
+    @Test
+    public void validatorsSharingCacheClassifyEachFontOnce() {
+        FontVerdictCache fontVerdictCache = new FontVerdictCache();
+        byte[] withoutEmbeddedFonts = pdfBytes("/pdf/uten-embeddede-fonter.pdf");
+
+        PdfValidationResult classified = new PdfValidator(fontVerdictCache).withMetrics(result -> {}).validate(withoutEmbeddedFonts, FONTS_ONLY);
+        assertThat(classified.errors, contains(REFERENCES_INVALID_FONT));
+        assertThat(classified.metrics.fontsInspected, is(1L));
+        assertThat(fontVerdictCache.misses(), is(1L));
+
+        PdfValidationResult cached = new PdfValidator(fontVerdictCache).withMetrics(result -> {}).validate(withoutEmbeddedFonts, FONTS_ONLY);
+        assertThat(cached.errors, contains(REFERENCES_INVALID_FONT));
+        assertThat(cached.metrics.fontsInspected, is(0L));
+        assertThat(cached.metrics.fontCacheHits, is(1L));
+        assertThat(fontVerdictCache.hits(), is(1L));
+        assertThat(fontVerdictCache.size(), is(1));
+    }
+
+    @Test
+    public void classifiesFontsAgainWithOtherSupportedFonts() {
+        FontVerdictCache fontVerdictCache = new FontVerdictCache();
+        PdfValidator cachingValidator = new PdfValidator(fontVerdictCache).withMetrics(result -> {});
+        byte[] withoutEmbeddedFonts = pdfBytes("/pdf/uten-embeddede-fonter.pdf");
+        assertThat(cachingValidator.validate(withoutEmbeddedFonts, FONTS_ONLY).errors, contains(REFERENCES_INVALID_FONT));
+
+        Set<String> corporateFonts = new HashSet<>(PdfValidationSettings.STANDARD_SUPPORTED_FONTS);
+        corporateFonts.add("Calibri");
+        corporateFonts.add("Cambria");
+        PdfValidationResult withCorporateFonts = cachingValidator.validate(withoutEmbeddedFonts, FONTS_ONLY.withSupportedFonts(corporateFonts));
+        assertThat(withCorporateFonts.errors, empty());
+        assertThat(withCorporateFonts.metrics.fontsInspected, is(1L));
+        assertThat(fontVerdictCache.size(), is(2));
+    }
+
+    @Test
+    public void keepsAtMostMaxSizeVerdicts() {
+        FontVerdictCache fontVerdictCache = new FontVerdictCache(1);
+        PdfValidator cachingValidator = new PdfValidator(fontVerdictCache);
+        cachingValidator.validate(pdfBytes("/pdf/uten-embeddede-fonter.pdf"), FONTS_ONLY);
+        cachingValidator.validate(pdfBytes("/pdf/a4-21pages.pdf"), FONTS_ONLY);
+        assertThat(fontVerdictCache.size(), is(1));
+
+        PdfValidationResult evicted = cachingValidator.withMetrics(result -> {}).validate(pdfBytes("/pdf/uten-embeddede-fonter.pdf"), FONTS_ONLY);
+        assertThat(evicted.errors, contains(REFERENCES_INVALID_FONT));
+        assertThat(evicted.metrics.fontsInspected, is(1L));
+        assertThat(fontVerdictCache.misses(), is(3L));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.BarcodeAreaContent;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static no.digipost.print.validate.PdfValidationError.INSUFFICIENT_MARGIN_FOR_PRINT;
+import static no.digipost.print.validate.TestPdfs.corpus;
+import static no.digipost.print.validate.TestPdfs.templatedDocument;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class MarginVerdictCacheTest {
+
+    private static final PdfValidationSettings MARGIN_ONLY = new PdfValidationSettings(true, false, false, false);
+
+    @Test
+    public void remembersVerdictsOfRepeatedFormsAndPagesWithinDocument() throws IOException {
+        PdfValidationResult templated = new PdfValidator().withMetrics(result -> {}).validate(templatedDocument(false), MARGIN_ONLY);
+        assertThat(templated.errors, empty());
+        assertThat("letterhead form on pages 2 and 3, and pages 4 to 6 with the content of page 3", templated.metrics.marginCacheHits, is(5L));
+    }
+
+    @Test
+    public void sharesVerdictsOfPagesAcrossDocuments() throws IOException {
+        MarginVerdictCache marginVerdictCache = new MarginVerdictCache();
+        PdfValidator cachingValidator = new PdfValidator().withMarginVerdictCache(marginVerdictCache).withMetrics(result -> {});
+        assertThat(cachingValidator.validate(templatedDocument(false), MARGIN_ONLY).metrics.marginCacheHits, is(5L));
+        assertThat("the 3 distinct pages", marginVerdictCache.size(), is(3));
+
+        PdfValidationResult again = cachingValidator.validate(templatedDocument(false), MARGIN_ONLY);
+        assertThat(again.errors, empty());
+        assertThat("every page", again.metrics.marginCacheHits, is(6L));
+        assertThat(marginVerdictCache.hits(), is(3L));
+
+        PdfValidationResult allContent = cachingValidator.validate(templatedDocument(false), MARGIN_ONLY.withBarcodeAreaContent(BarcodeAreaContent.ALL));
+        assertThat("only within the document, as other kinds of content are looked for", allContent.metrics.marginCacheHits, is(5L));
+        assertThat(marginVerdictCache.size(), is(6));
+    }
+
+    @Test
+    public void findsContentInBarcodeAreaOfFormDespiteVerdictsOfSimilarPages() throws IOException {
+        MarginVerdictCache marginVerdictCache = new MarginVerdictCache();
+        PdfValidator cachingValidator = new PdfValidator().withMarginVerdictCache(marginVerdictCache);
+        assertThat(cachingValidator.validate(templatedDocument(false), MARGIN_ONLY).errors, empty());
+        assertThat(cachingValidator.validate(templatedDocument(true), MARGIN_ONLY).errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+    }
+
+    @Test
+    public void givesSameResultFromRememberedVerdictsAsInspectingEachPage() throws IOException {
+        MarginVerdictCache marginVerdictCache = new MarginVerdictCache();
+        PdfValidator cachingValidator = new PdfValidator().withMarginVerdictCache(marginVerdictCache);
+        PdfValidationSettings allContent = MARGIN_ONLY.withBarcodeAreaContent(BarcodeAreaContent.ALL);
+        validatesCorpusWithSameResultAsInspectingEachPage(cachingValidator, allContent);
+        long missesOfFirstPass = marginVerdictCache.misses();
+        validatesCorpusWithSameResultAsInspectingEachPage(cachingValidator, allContent);
+        assertThat("every page is remembered from the first pass", marginVerdictCache.misses(), is(missesOfFirstPass));
+    }
+
+    private static void validatesCorpusWithSameResultAsInspectingEachPage(PdfValidator cachingValidator, PdfValidationSettings settings) throws IOException {
+        for (Path pdf : corpus()) {
+            assertThat(pdf.getFileName().toString(), cachingValidator.validate(pdf, settings).errors, is(new PdfValidator().validate(pdf, settings).errors));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.MemoryPolicy;
+import org.apache.pdfbox.io.RandomAccess;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static no.digipost.print.validate.TestPdfs.pdfPath;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MemoryPolicyTest {
+
+    @Test
+    public void spillsStreamsBeyondMainMemoryLimitToScratchFileDeletedOnClose(@TempDir Path scratchDirectory) throws IOException {
+        try (RandomAccessStreamCache streamCache = new MemoryPolicy(0, scratchDirectory).streamCache().create()) {
+            RandomAccess stream = streamCache.createBuffer();
+            stream.write(new byte[10_000]);
+            assertThat(scratchFiles(scratchDirectory), hasSize(1));
+        }
+        assertThat(scratchFiles(scratchDirectory), empty());
+    }
+
+    @Test
+    public void keepsStreamsWithinMainMemoryLimitInMainMemory(@TempDir Path scratchDirectory) throws IOException {
+        for (MemoryPolicy mainMemory : new MemoryPolicy[] {new MemoryPolicy(1_000_000, scratchDirectory), MemoryPolicy.MAIN_MEMORY_ONLY}) {
+            try (RandomAccessStreamCache streamCache = mainMemory.streamCache().create()) {
+                streamCache.createBuffer().write(new byte[10_000]);
+                assertThat(scratchFiles(scratchDirectory), empty());
+            }
+        }
+    }
+
+    @Test
+    public void validatesWithScratchFilesWithSameResultAsInMainMemory(@TempDir Path scratchDirectory) throws IOException {
+        PdfValidationSettings scratchFiles = CHECK_ALL.withMemoryPolicy(new MemoryPolicy(0, scratchDirectory));
+        PdfValidator concurrentValidator = new PdfValidator(Runnable::run, 2);
+        for (String pdf : new String[] {"/pdf/21-pages-and-bogus-fonts.pdf", "/pdf/a4-left-margin-14_5mm.pdf", "/pdf/encrypted-with-password.pdf"}) {
+            PdfValidationResult inMainMemory = new PdfValidator().validate(pdfBytes(pdf), CHECK_ALL);
+            assertThat(pdf, new PdfValidator().validate(pdfBytes(pdf), scratchFiles).errors, is(inMainMemory.errors));
+            assertThat(pdf, concurrentValidator.validate(pdfPath(pdf), scratchFiles).errors, is(inMainMemory.errors));
+        }
+        assertThat("scratch files are deleted", scratchFiles(scratchDirectory), empty());
+    }
+
+    @Test
+    public void rejectsNegativeMainMemoryLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new MemoryPolicy(-1));
+    }
+
+    private static List<Path> scratchFiles(Path scratchDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(scratchDirectory)) {
+            return files.collect(toList());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.nCopies;
+import static java.util.stream.Collectors.toList;
+import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.corpus;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class PdfBatchValidatorTest {
+
+    private static final PdfValidator pdfValidator = new PdfValidator();
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final PdfValidator countingValidator = new PdfValidator() {
+        @Override
+        public PdfValidationResult validate(byte[] pdfContent, PdfValidationSettings printValidationSettings) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                return super.validate(pdfContent, printValidationSettings);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    };
+
+    @Test
+    public void validatesBatchWithBoundedConcurrencyAndSameResultsAsOneByOne() throws IOException {
+        List<Path> corpus = corpus();
+        List<PdfValidationError> oneByOne = new ArrayList<>();
+        for (Path pdf : corpus) {
+            oneByOne.addAll(pdfValidator.validate(pdf, CHECK_ALL).errors);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            PdfBatchValidator batchValidator = new PdfBatchValidator(countingValidator, executor, 3, Long.MAX_VALUE);
+            List<PdfValidationResult> results = batchValidator.validateAll(corpus.stream().map(pdf -> PdfBatchValidator.Input.of(pdfBytes("/pdf/" + pdf.getFileName()))).iterator(), CHECK_ALL);
+            assertThat(results.stream().flatMap(result -> result.errors.stream()).collect(toList()), is(oneByOne));
+            assertThat(maxRunning.get(), lessThanOrEqualTo(3));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void validatesDocumentsLargerThanMaxBytesInFlightAlone() throws IOException {
+        List<Path> corpus = corpus();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Path> completed = new ArrayList<>();
+            new PdfBatchValidator(countingValidator, executor, 3, 1).validate(
+                    corpus.iterator(), pdf -> PdfBatchValidator.Input.of(pdf.toFile().length(), () -> pdfBytes("/pdf/" + pdf.getFileName())), CHECK_ALL,
+                    (pdf, result) -> completed.add(pdf));
+            assertThat(maxRunning.get(), is(1));
+            assertThat(completed, is(corpus));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void drainsDocumentsInFlightWhenResultHandlerFails() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Path> passedOn = new ArrayList<>();
+            IllegalStateException failingOnResult = assertThrows(IllegalStateException.class, () -> new PdfBatchValidator(countingValidator, executor, 3, Long.MAX_VALUE).validate(
+                    corpus().iterator(), pdf -> PdfBatchValidator.Input.of(pdfBytes("/pdf/" + pdf.getFileName())), CHECK_ALL, (pdf, result) -> {
+                        passedOn.add(pdf);
+                        throw new IllegalStateException("failed handling " + pdf.getFileName());
+                    }));
+            assertThat(failingOnResult.getMessage(), is("failed handling " + passedOn.get(0).getFileName()));
+            assertThat("documents in flight are drained", passedOn.size(), lessThanOrEqualTo(3));
+            assertThat(running.get(), is(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void checksPagesConcurrentlyOnSameExecutorAsBatchWithoutDeadlock() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            PdfValidator concurrentValidator = new PdfValidator(executor, 4);
+            PdfBatchValidator batchValidator = new PdfBatchValidator(concurrentValidator, executor, 2, Long.MAX_VALUE);
+            byte[] pdf = pdfBytes("/pdf/21-pages-and-bogus-fonts.pdf");
+            PdfValidationSettings settings = new PdfValidationSettings(true, true, false, true);
+            List<PdfValidationResult> results = assertTimeoutPreemptively(Duration.ofMinutes(1),
+                    () -> batchValidator.validateAll(nCopies(6, PdfBatchValidator.Input.of(pdf)).iterator(), settings));
+            assertThat(results.stream().map(result -> result.errors).collect(toList()), everyItem(is(pdfValidator.validate(pdf, settings).errors)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static no.digipost.print.validate.PdfValidationError.REFERENCES_INVALID_FONT;
+import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.corpus;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class PdfFontValidatorTest {
+
+    private static final PdfValidator pdfValidator = new PdfValidator();
+    private static final PdfValidationSettings FONTS_ONLY = new PdfValidationSettings(false, true, false, false);
+    private static final PdfValidationSettings FONT_DICTIONARIES_ONLY = FONTS_ONLY.withFontProgramInspection(false);
+
+    @Test
+    public void classifiesFontsFromFontDictionaries() {
+        byte[] withoutEmbeddedFonts = pdfBytes("/pdf/uten-embeddede-fonter.pdf");
+        PdfValidationResult result = pdfValidator.withMetrics(validated -> {}).validate(withoutEmbeddedFonts, FONT_DICTIONARIES_ONLY);
+        assertThat(result.errors, contains(REFERENCES_INVALID_FONT));
+        assertThat(result.metrics.fontsInspected, is(1L));
+
+        Set<String> corporateFonts = new HashSet<>(PdfValidationSettings.STANDARD_SUPPORTED_FONTS);
+        corporateFonts.add("Calibri");
+        corporateFonts.add("Cambria");
+        assertThat(pdfValidator.validate(withoutEmbeddedFonts, FONT_DICTIONARIES_ONLY.withSupportedFonts(corporateFonts)).errors, empty());
+        assertThat(pdfValidator.validate(pdfBytes("/pdf/21-pages-and-bogus-fonts.pdf"), FONT_DICTIONARIES_ONLY).errors,
+                is(pdfValidator.validate(pdfBytes("/pdf/21-pages-and-bogus-fonts.pdf"), FONTS_ONLY).errors));
+    }
+
+    @Test
+    public void findsDamagedEmbeddedFontOnlyByParsingTheFontProgram() {
+        byte[] damagedFont = pdfBytes("/pdf/corrupt_no_pages.pdf");
+        assertThat(pdfValidator.validate(damagedFont, FONTS_ONLY).errors, contains(REFERENCES_INVALID_FONT));
+        assertThat(pdfValidator.validate(damagedFont, FONT_DICTIONARIES_ONLY).errors, empty());
+    }
+
+    @Test
+    public void classifiesFontsFromFontDictionariesWithSameResultAsFromLoadedFonts() throws IOException {
+        PdfValidator cachingValidator = new PdfValidator(new FontVerdictCache());
+        for (PdfValidationSettings settings : asList(CHECK_ALL, FONTS_ONLY)) {
+            for (Path pdf : corpus()) {
+                if (pdf.endsWith("corrupt_no_pages.pdf")) {
+                    continue;
+                }
+                List<PdfValidationError> fromLoadedFonts = pdfValidator.validate(pdf, settings).errors;
+                assertThat(pdf.getFileName().toString(), pdfValidator.validate(pdf, settings.withFontProgramInspection(false)).errors, is(fromLoadedFonts));
+                assertThat(pdf.getFileName().toString(), cachingValidator.validate(pdf, settings.withFontProgramInspection(false)).errors, is(fromLoadedFonts));
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.Budget;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static no.digipost.print.validate.PdfTriage.UNKNOWN_NUMBER_OF_PAGES;
+import static no.digipost.print.validate.PdfTriage.UNKNOWN_VERSION;
+import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.corpus;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class PdfTriageTest {
+
+    private static final String CATALOG = "<< /Type /Catalog /Pages 2 0 R >>";
+    private static final String PAGE = "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] >>";
+
+    @Test
+    public void readsVersionAndNumberOfPagesOfSingleCrossReferenceTable() throws IOException {
+        byte[] pdf = pdf("", CATALOG, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>", PAGE);
+        PdfTriage triage = triage(pdf);
+        assertThat(triage.version, is(1.4f));
+        assertThat(triage.numberOfPages, is(1));
+        assertThat(triage.encrypted, is(false));
+        assertThat(numberOfPagesParsedByPdfBox(pdf), is(1));
+    }
+
+    @Test
+    public void skipsValuesOfNoInterestInDictionaries() {
+        PdfTriage triage = triage(pdf("", CATALOG, "<< /Type /Pages /Kids [3 0 R] /Resources << /Font << >> /Names [(a >> b) <3e3e> [<< /Count 7 >>]] >> /Count 1 >>", PAGE));
+        assertThat(triage.numberOfPages, is(1));
+    }
+
+    @Test
+    public void leavesIndirectPageCountToFullParsing() throws IOException {
+        byte[] pdf = pdf("", CATALOG, "<< /Type /Pages /Kids [3 0 R] /Count 4 0 R >>", PAGE, "1");
+        assertThat(triage(pdf).numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+        assertThat(numberOfPagesParsedByPdfBox(pdf), is(1));
+    }
+
+    @Test
+    public void leavesIncrementallyUpdatedDocumentsToFullParsing() {
+        PdfTriage previousLoop = triage(pdf("/Prev {xref}", CATALOG, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>", PAGE));
+        assertThat(previousLoop.version, is(1.4f));
+        assertThat(previousLoop.numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+
+        assertThat(triage(pdf("/XRefStm {xref}", CATALOG, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>", PAGE)).numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+        assertThat("cross-reference and object streams",
+                triage(pdfBytes("/pdf/a4-left-margin-20mm_v17.pdf")).numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+    }
+
+    @Test
+    public void leavesMalformedCrossReferenceTablesToFullParsing() {
+        byte[] pdf = pdf("", CATALOG, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>", PAGE);
+        String wellFormed = new String(pdf, US_ASCII);
+
+        byte[] moreEntriesThanGiven = wellFormed.replace("xref\n0 4\n", "xref\n0 5\n").getBytes(US_ASCII);
+        assertThat(triage(moreEntriesThanGiven).numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+
+        byte[] truncated = Arrays.copyOf(pdf, wellFormed.indexOf("trailer") - 10);
+        PdfTriage triagedTruncated = triage(truncated);
+        assertThat(triagedTruncated.version, is(1.4f));
+        assertThat(triagedTruncated.numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+
+        int startxref = wellFormed.lastIndexOf("startxref\n") + "startxref\n".length();
+        byte[] wrongStartxref = (wellFormed.substring(0, startxref) + "9" + wellFormed.substring(startxref)).getBytes(US_ASCII);
+        assertThat(triage(wrongStartxref).numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+
+        byte[] wrongObjectOffset = wellFormed.replace("2 0 obj", "5 0 obj").getBytes(US_ASCII);
+        assertThat(triage(wrongObjectOffset).numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+    }
+
+    @Test
+    public void leavesEscapedNamesAndDeeplyNestedObjectsToFullParsing() {
+        assertThat(triage(pdf("", CATALOG, "<< /Type /Pages /Kids [3 0 R] /Co#75nt 1 >>", PAGE)).numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+
+        String deeplyNested = new String(new char[40]).replace("\0", "[") + new String(new char[40]).replace("\0", "]");
+        assertThat(triage(pdf("", CATALOG, "<< /Type /Pages /Kids [3 0 R] /Nested " + deeplyNested + " /Count 1 >>", PAGE)).numberOfPages,
+                is(UNKNOWN_NUMBER_OF_PAGES));
+    }
+
+    @Test
+    public void findsEncryptionDictionaryInTrailer() {
+        PdfTriage triage = triage(pdf("/Encrypt 4 0 R", CATALOG, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>", PAGE, "<< /Filter /Standard >>"));
+        assertThat(triage.encrypted, is(true));
+        assertThat(triage.numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+        assertThat(triage(pdfBytes("/pdf/corrupt.pdf")).version, is(UNKNOWN_VERSION));
+    }
+
+    @Test
+    public void triageBeforeParsingAgreesWithPdfBox() throws IOException {
+        PdfValidator pdfValidator = new PdfValidator();
+        PdfValidationSettings failFast = CHECK_ALL.withFailFast(true);
+        // a limit on the number of objects is checked when parsing, so the document is never rejected before parsing
+        PdfValidationSettings parsingFirst = failFast.withBudget(new Budget(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE - 1));
+        for (Path pdf : corpus()) {
+            String document = pdf.getFileName().toString();
+            PdfValidationResult triaged = pdfValidator.validate(pdf, failFast);
+            PdfValidationResult parsed = pdfValidator.validate(pdf, parsingFirst);
+            assertThat(document, triaged.errors, is(parsed.errors));
+            assertThat(document, triaged.pages, is(parsed.pages));
+
+            PdfTriage triage = triage(Files.readAllBytes(pdf));
+            try (PDDocument pdDoc = Loader.loadPDF(pdf.toFile())) {
+                if (triage.version != UNKNOWN_VERSION) {
+                    assertThat(document, triage.version, is(pdDoc.getDocument().getVersion()));
+                }
+                if (triage.numberOfPages != UNKNOWN_NUMBER_OF_PAGES) {
+                    assertThat(document, triage.numberOfPages, is(pdDoc.getNumberOfPages()));
+                }
+                assertThat(document, triage.encrypted, is(false));
+            } catch (InvalidPasswordException e) {
+                assertThat(document, triage.encrypted, is(true));
+            } catch (IOException e) {
+                assertThat(document, triage.encrypted, is(false));
+            }
+        }
+        assertThat(triage(pdfBytes("/pdf/a4-landscape.pdf")).numberOfPages, is(1));
+        assertThat(triage(pdfBytes("/pdf/encrypted-with-password.pdf")).encrypted, is(true));
+        assertThat("incrementally updated", triage(pdfBytes("/pdf/a4-21pages.pdf")).numberOfPages, is(UNKNOWN_NUMBER_OF_PAGES));
+    }
+
+    private static PdfTriage triage(byte[] pdf) {
+        return PdfTriage.of(new RandomAccessReadBuffer(pdf));
+    }
+
+    private static int numberOfPagesParsedByPdfBox(byte[] pdf) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            return document.getNumberOfPages();
+        }
+    }
+
+    /**
+     * @param trailerEntries entries of the trailer besides {@code /Size} and {@code /Root}, where {@code {xref}} is
+     *                       replaced by the offset of the cross-reference table
+     * @param objects the objects numbered from 1, where the first is the catalog
+     * @return a document of version 1.4 with a single cross-reference table
+     */
+    private static byte[] pdf(String trailerEntries, String... objects) {
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        StringBuilder entries = new StringBuilder("0000000000 65535 f\r\n");
+        for (int i = 0; i < objects.length; i++) {
+            entries.append(String.format("%010d 00000 n\r\n", pdf.length()));
+            pdf.append(i + 1).append(" 0 obj\n").append(objects[i]).append("\nendobj\n");
+        }
+        int xref = pdf.length();
+        pdf.append("xref\n0 ").append(objects.length + 1).append('\n').append(entries)
+                .append("trailer\n<< /Size ").append(objects.length + 1).append(" /Root 1 0 R ").append(trailerEntries.replace("{xref}", String.valueOf(xref))).append(" >>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        return pdf.toString().getBytes(US_ASCII);
+    }
+}
@@ -15,16 +15,30 @@
  */
 package no.digipost.print.validate;
 
+import no.digipost.print.validate.PdfValidationSettings.BarcodeAreaContent;
 import no.digipost.print.validate.PdfValidationSettings.Bleed;
+import no.digipost.print.validate.PdfValidationSettings.Budget;
+import no.digipost.print.validate.PdfValidationSettings.PaperFormat;
+import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static java.util.Objects.requireNonNull;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static no.digipost.print.validate.PdfValidationError.DOCUMENT_HAS_NO_PAGES;
 import static no.digipost.print.validate.PdfValidationError.INSUFFICIENT_MARGIN_FOR_PRINT;
 import static no.digipost.print.validate.PdfValidationError.PDF_IS_ENCRYPTED;
@@ -33,13 +47,23 @@ import static no.digipost.print.validate.PdfValidationError.REFERENCES_INVALID_F
 import static no.digipost.print.validate.PdfValidationError.TOO_MANY_PAGES_FOR_AUTOMATED_PRINT;
 import static no.digipost.print.validate.PdfValidationError.UNSUPPORTED_DIMENSIONS;
 import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.LINE_IN_BARCODE_AREA;
+import static no.digipost.print.validate.TestPdfs.LOGO_IN_BARCODE_AREA;
+import static no.digipost.print.validate.TestPdfs.WHITE_BACKGROUND;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static no.digipost.print.validate.TestPdfs.pdfPath;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class PrintPdfValidatorTest {
 
@@ -62,11 +86,59 @@ public class PrintPdfValidatorTest {
         assertThat(validationErrors("/pdf/a4-landscape_v17.pdf", CHECK_ALL), empty());
     }
 
+    @Test
+    public void sharesResultsOfDocumentsWithoutErrorsAndFindsErrorsByBitmask() {
+        PdfValidationResult ok = pdfValidator.validate(pdfBytes("/pdf/a4-free-barcode-area.pdf"), CHECK_ALL);
+        assertThat(pdfValidator.validate(pdfBytes("/pdf/a4-landscape.pdf"), CHECK_ALL), sameInstance(ok));
+        assertThat(ok.okForPrint && ok.okForWeb, is(true));
+
+        PdfValidationResult tooManyPages = pdfValidator.validate(pdfBytes("/pdf/21-pages-and-bogus-fonts.pdf"), CHECK_ALL);
+        assertThat(tooManyPages.hasError(TOO_MANY_PAGES_FOR_AUTOMATED_PRINT) && tooManyPages.hasError(REFERENCES_INVALID_FONT), is(true));
+        assertThat(tooManyPages.hasError(PDF_PARSE_ERROR), is(false));
+        assertThat(tooManyPages.okForWeb, is(false));
+    }
+
+    @Test
+    public void findsImagesAndVectorGraphicsInBarcodeAreaWhenEnabled() {
+        PdfValidationSettings marginOnly = new PdfValidationSettings(true, false, false, false);
+        PdfValidationSettings images = marginOnly.withBarcodeAreaContent(new BarcodeAreaContent(false, true, false));
+        PdfValidationSettings vectorGraphics = marginOnly.withBarcodeAreaContent(new BarcodeAreaContent(false, false, true));
+        PdfValidationSettings all = marginOnly.withBarcodeAreaContent(BarcodeAreaContent.ALL);
+        for (byte[] pdf : asList(LOGO_IN_BARCODE_AREA, LINE_IN_BARCODE_AREA, WHITE_BACKGROUND)) {
+            assertThat(pdfValidator.validate(pdf, marginOnly).errors, empty());
+        }
+        assertThat(pdfValidator.validate(LOGO_IN_BARCODE_AREA, images).errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+        assertThat(pdfValidator.validate(LOGO_IN_BARCODE_AREA, vectorGraphics).errors, empty());
+        assertThat(pdfValidator.validate(LINE_IN_BARCODE_AREA, vectorGraphics).errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+        assertThat(pdfValidator.validate(LINE_IN_BARCODE_AREA, images).errors, empty());
+        assertThat(pdfValidator.validate(WHITE_BACKGROUND, all).errors, empty());
+        assertThat(validationErrors("/pdf/a4-left-margin-14_5mm.pdf", all), contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+    }
+
+    @Test
+    public void warmsUpWithoutNotifyingListenerOrCachingResults() {
+        List<PdfValidationResult> validated = new ArrayList<>();
+        ValidationResultCache resultCache = new ValidationResultCache(Duration.ofMinutes(1));
+        new PdfValidator().withMetrics(validated::add).withResultCache(resultCache).warmUp();
+        assertThat(validated, empty());
+        assertThat(resultCache.size(), is(0));
+        assertThat(pdfValidator.validate(WarmUpDocument.generate(), CHECK_ALL).errors, containsInAnyOrder(INSUFFICIENT_MARGIN_FOR_PRINT, REFERENCES_INVALID_FONT));
+    }
+
     @Test
     public void failsDueToMissingEmbeddedFont() {
         assertThat(validationErrors("/pdf/uten-embeddede-fonter.pdf", CHECK_ALL), contains(REFERENCES_INVALID_FONT));
     }
 
+    @Test
+    public void doesNotFailDueToMissingEmbeddedFontIfWhiteListedInSettings() {
+        Set<String> corporateFonts = new HashSet<>(PdfValidationSettings.STANDARD_SUPPORTED_FONTS);
+        corporateFonts.add("Calibri");
+        assertThat(validationErrors("/pdf/uten-embeddede-fonter.pdf", CHECK_ALL.withSupportedFonts(corporateFonts)), contains(REFERENCES_INVALID_FONT));
+        corporateFonts.add("cam bria");
+        assertThat(validationErrors("/pdf/uten-embeddede-fonter.pdf", CHECK_ALL.withSupportedFonts(corporateFonts)), empty());
+    }
+
     @Test
     public void doesNotFailDueToMissingEmbeddedFontIfCheckDisabledInSettings() {
         PdfValidationSettings innstillinger = new PdfValidationSettings(true, false, true, true);
@@ -156,11 +228,31 @@ public class PrintPdfValidatorTest {
         assertThat(validationErrors("/pdf/a5-landscape-left-margin-15mm.pdf", CHECK_ALL), containsInAnyOrder(INSUFFICIENT_MARGIN_FOR_PRINT, UNSUPPORTED_DIMENSIONS));
     }
 
+    @Test
+    public void validatesPagesAgainstConfiguredPaperFormat() {
+        PdfValidationSettings letter = CHECK_ALL.withPaperFormat(PaperFormat.LETTER);
+        assertThat(validationErrors("/pdf/letter-left-margin-20mm.pdf", letter), empty());
+        assertThat(validationErrors("/pdf/letter-landscape-left-margin-20mm.pdf", letter), empty());
+        assertThat(validationErrors("/pdf/a4-free-barcode-area.pdf", letter), contains(UNSUPPORTED_DIMENSIONS));
+
+        // despite their names, these documents have A3 pages
+        PdfValidationSettings a3 = CHECK_ALL.withPaperFormat(new PaperFormat(297, 420));
+        assertThat(validationErrors("/pdf/a5-left-margin-15mm.pdf", a3), contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+        assertThat(validationErrors("/pdf/a5-landscape-left-margin-15mm.pdf", a3), contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+
+        PdfValidationResult a4AsLetter = pdfValidator.validate(pdfBytes("/pdf/a4-free-barcode-area.pdf"), letter);
+        assertThat(a4AsLetter.paperFormat, is(PaperFormat.LETTER));
+        assertThat(a4AsLetter.formattedValidationErrorMessage(UNSUPPORTED_DIMENSIONS), containsString("206—216"));
+        assertThat(ValidationResultStore.decode(ValidationResultStore.encode(a4AsLetter)).toString(), is(a4AsLetter.toString()));
+    }
+
     @Test
     public void pdfWithBogusFontsAndTooManyPages() {
         assertThat(validationErrors("/pdf/21-pages-and-bogus-fonts.pdf", new PdfValidationSettings(true, false, false, true)), empty());
         assertThat(validationErrors("/pdf/21-pages-and-bogus-fonts.pdf", new PdfValidationSettings(true, false, true, true)), contains(TOO_MANY_PAGES_FOR_AUTOMATED_PRINT));
-        assertThat(validationErrors("/pdf/21-pages-and-bogus-fonts.pdf", new PdfValidationSettings(true, true, false, true)), everyItem(is(REFERENCES_INVALID_FONT)));
+        List<PdfValidationError> invalidFontPerPage = validationErrors("/pdf/21-pages-and-bogus-fonts.pdf", new PdfValidationSettings(true, true, false, true));
+        assertThat(invalidFontPerPage, everyItem(is(REFERENCES_INVALID_FONT)));
+        assertThat(invalidFontPerPage, hasSize(21));
     }
 
     @Test
@@ -178,8 +270,100 @@ public class PrintPdfValidatorTest {
         assertThat(validationErrors("/pdf/a4-pdf-with-10mm-bleed.pdf", CHECK_ALL), containsInAnyOrder(UNSUPPORTED_DIMENSIONS));
     }
 
+    @Test
+    public void stopsAtFirstErrorInFailFastMode() {
+        PdfValidationSettings failFast = CHECK_ALL.withFailFast(true);
+        assertThat(validationErrors("/pdf/a4-left-margin-20mm_v17.pdf", failFast), empty());
+        assertThat(validationErrors("/pdf/far-from-a4-free-barcode-area.pdf", failFast), contains(UNSUPPORTED_DIMENSIONS));
+        assertThat(validationErrors("/pdf/21-pages-and-bogus-fonts.pdf", failFast), contains(TOO_MANY_PAGES_FOR_AUTOMATED_PRINT));
+        assertThat(validationErrors("/pdf/21-pages-and-bogus-fonts.pdf", new PdfValidationSettings(true, true, false, true).withFailFast(true)),
+                contains(REFERENCES_INVALID_FONT));
+        assertThat(validationErrors("/pdf/encrypted-with-password.pdf", failFast), contains(PDF_IS_ENCRYPTED));
+    }
+
+    @Test
+    public void validatesPdfDirectlyFromByteArraysAndByteBuffers() {
+        byte[] pdf = pdfBytes("/pdf/a4-full-page.pdf");
+        assertThat(pdfValidator.validate(pdf, CHECK_ALL).errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+        assertThat(pdfValidator.validate(ByteBuffer.wrap(pdf), CHECK_ALL).errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+        assertThat(pdfValidator.validate(ByteBuffer.wrap(pdf).asReadOnlyBuffer(), CHECK_ALL).errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(pdf.length + 20);
+        direct.put(new byte[10]).put(pdf).put(new byte[10]).flip();
+        direct.position(10).limit(10 + pdf.length);
+        assertThat(pdfValidator.validate(direct, CHECK_ALL).errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+        assertThat(pdfValidator.validate(direct.asReadOnlyBuffer(), CHECK_ALL).errors, contains(INSUFFICIENT_MARGIN_FOR_PRINT));
+        assertThat("position of the given buffer", direct.position(), is(10));
+    }
+
+    @Test
+    public void collectsMetricsAndNotifiesListenerWhenEnabled() throws IOException {
+        assertThat(pdfValidator.validate(pdfBytes("/pdf/a4-21pages.pdf"), CHECK_ALL).metrics, nullValue());
+
+        List<PdfValidationResult> notified = new ArrayList<>();
+        PdfValidator validatorWithMetrics = pdfValidator.withMetrics(notified::add);
+        PdfValidationResult result = validatorWithMetrics.validate(pdfPath("/pdf/21-pages-and-bogus-fonts.pdf"), new PdfValidationSettings(true, true, false, true));
+        assertThat(notified, contains(result));
+        ValidationMetrics metrics = result.metrics;
+        assertThat(metrics.pagesChecked, is(21L));
+        assertThat(metrics.parseNanos, greaterThan(0L));
+        assertThat(metrics.nanos(ValidationMetrics.Phase.FONTS), greaterThan(0L));
+        assertThat(metrics.totalNanos, greaterThan(metrics.parseNanos));
+        assertThat(metrics.contentStreamBytes, greaterThan(0L));
+        assertThat(metrics.contentStreamOperators, greaterThan(0L));
+        assertThat(metrics.fontsInspected + metrics.fontCacheHits, greaterThan(0L));
+
+        assertThat(validatorWithMetrics.validate(pdfBytes("/pdf/encrypted-with-password.pdf"), CHECK_ALL).metrics.pagesChecked, is(0L));
+    }
+
+    @Test
+    public void cancellingAsynchronousValidationStopsBeforeNextPage() throws Exception {
+        byte[] pdf = pdfBytes("/pdf/a4-21pages.pdf");
+        assertThat(pdfValidator.validateAsync(pdf, CHECK_ALL, Runnable::run).toCompletableFuture().get().errors, contains(TOO_MANY_PAGES_FOR_AUTOMATED_PRINT));
+
+        List<Runnable> pendingTasks = new ArrayList<>();
+        CompletableFuture<PdfValidationResult> cancelled = pdfValidator.validateAsync(pdf, CHECK_ALL, pendingTasks::add).toCompletableFuture();
+        cancelled.cancel(true);
+        pendingTasks.forEach(Runnable::run);
+        assertThat(cancelled.isCancelled(), is(true));
+
+        ValidationContext context = new ValidationContext(Budget.UNLIMITED, null);
+        AtomicInteger checkedPages = new AtomicInteger();
+        PageCheck cancelAfterTwoPages = new PageCheck() {
+            @Override
+            public ValidationMetrics.Phase phase() {
+                return ValidationMetrics.Phase.DIMENSIONS;
+            }
+            @Override
+            public void check(int pageIndex, PDPage page, PDRectangle cropBox) {
+                if (checkedPages.incrementAndGet() == 2) {
+                    context.cancel();
+                }
+            }
+            @Override
+            public boolean isConclusive() {
+                return false;
+            }
+            @Override
+            public boolean hasErrors() {
+                return false;
+            }
+            @Override
+            public void merge(PageCheck followingPages) {
+            }
+            @Override
+            public void addErrors(List<PdfValidationError> errors) {
+            }
+        };
+        try (PDDocument pdDoc = Loader.loadPDF(pdf)) {
+            PageChecks pageChecks = new PageChecks(singletonList(cancelAfterTwoPages), false, context);
+            assertThrows(CancellationException.class, () -> pageChecks.checkPages(pdDoc, 0, Integer.MAX_VALUE));
+        }
+        assertThat(checkedPages.get(), is(2));
+    }
+
     public static List<PdfValidationError> validationErrors(String pdfResourceName, PdfValidationSettings printValidationSettings) {
-        Path pdf = Paths.get(requireNonNull(PrintPdfValidatorTest.class.getResource(pdfResourceName), pdfResourceName).getFile().replace("%20", " "));
+        Path pdf = pdfPath(pdfResourceName);
         try {
             return pdfValidator.validate(pdf, printValidationSettings).errors;
         } catch (IOException e) {
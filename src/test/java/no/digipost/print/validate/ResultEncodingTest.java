@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.Bleed;
+import no.digipost.print.validate.PdfValidationSettings.PaperFormat;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.nCopies;
+import static no.digipost.print.validate.PdfValidationError.INSUFFICIENT_MARGIN_FOR_PRINT;
+import static no.digipost.print.validate.PdfValidationError.PDF_IS_ENCRYPTED;
+import static no.digipost.print.validate.PdfValidationError.REFERENCES_INVALID_FONT;
+import static no.digipost.print.validate.PdfValidationError.TOO_MANY_PAGES_FOR_AUTOMATED_PRINT;
+import static no.digipost.print.validate.PdfValidationError.VALIDATION_BUDGET_EXCEEDED;
+import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ResultEncodingTest {
+
+    @Test
+    public void decodesErrorsPagesBleedAndPaperFormatOfEncodedResult() {
+        PdfValidationResult result = new PdfValidationResult(asList(INSUFFICIENT_MARGIN_FOR_PRINT, REFERENCES_INVALID_FONT), 3, new Bleed(2, 1), PaperFormat.LETTER, null);
+        byte[] encoded = ResultEncoding.encode(result);
+        assertThat(encoded.length, is(25 + 2));
+
+        PdfValidationResult decoded = ResultEncoding.decode(encoded);
+        assertThat(decoded.errors, is(result.errors));
+        assertThat(decoded.pages, is(3));
+        assertThat(decoded.bleed.positiveBleedInMM, is(2));
+        assertThat(decoded.bleed.negativeBleedInMM, is(1));
+        assertThat(decoded.paperFormat.widthInMM, is(PaperFormat.LETTER.widthInMM));
+        assertThat(decoded.paperFormat.heightInMM, is(PaperFormat.LETTER.heightInMM));
+        assertThat(decoded.okForPrint, is(false));
+    }
+
+    @Test
+    public void decodesResultWithoutErrorsForStandardSettingsAsSharedResult() {
+        PdfValidationResult ok = new PdfValidator().validate(pdfBytes("/pdf/a4-free-barcode-area.pdf"), CHECK_ALL);
+        assertThat(ResultEncoding.decode(ResultEncoding.encode(ok)), sameInstance(ok));
+        assertThat(ResultEncoding.decode(ResultEncoding.encode(new PdfValidationResult(emptyList(), 1, CHECK_ALL.bleed))), sameInstance(ok));
+    }
+
+    @Test
+    public void encodesErrorsWithPinnedCodes() {
+        byte[] encoded = ResultEncoding.encode(new PdfValidationResult(asList(PDF_IS_ENCRYPTED, REFERENCES_INVALID_FONT, VALIDATION_BUDGET_EXCEEDED), 1, CHECK_ALL.bleed));
+        assertThat(encoded[0], is((byte) 1));
+        assertThat(new byte[] {encoded[5], encoded[6], encoded[7]}, is(new byte[] {0, 8, 12}));
+
+        List<PdfValidationError> allErrors = asList(PdfValidationError.values());
+        PdfValidationResult allErrorsResult = new PdfValidationResult(allErrors, 1, CHECK_ALL.bleed);
+        assertThat("every error has a code", ResultEncoding.decode(ResultEncoding.encode(allErrorsResult)).errors, is(allErrors));
+    }
+
+    @Test
+    public void encodesMoreErrorsThanFitInOneByte() {
+        List<PdfValidationError> manyErrors = new ArrayList<>(nCopies(300, REFERENCES_INVALID_FONT));
+        manyErrors.add(TOO_MANY_PAGES_FOR_AUTOMATED_PRINT);
+        PdfValidationResult manyErrorsResult = new PdfValidationResult(manyErrors, 300, CHECK_ALL.bleed);
+        assertThat(ResultEncoding.decode(ResultEncoding.encode(manyErrorsResult)).errors, is(manyErrors));
+    }
+
+    @Test
+    public void rejectsBytesWhichAreNotAnEncodedResult() {
+        byte[] encoded = ResultEncoding.encode(new PdfValidationResult(asList(REFERENCES_INVALID_FONT), 1, CHECK_ALL.bleed));
+        assertThrows(IllegalArgumentException.class, () -> ResultEncoding.decode(new byte[] {1, 2, 3}));
+
+        byte[] otherVersion = encoded.clone();
+        otherVersion[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> ResultEncoding.decode(otherVersion));
+
+        byte[] unknownError = encoded.clone();
+        unknownError[5] = (byte) 200;
+        assertThrows(IllegalArgumentException.class, () -> ResultEncoding.decode(unknownError));
+
+        byte[] tooManyErrors = encoded.clone();
+        tooManyErrors[4] = 30;
+        assertThrows(IllegalArgumentException.class, () -> ResultEncoding.decode(tooManyErrors));
+
+        byte[] trailingBytes = new byte[encoded.length + 1];
+        System.arraycopy(encoded, 0, trailingBytes, 0, encoded.length);
+        assertThrows(IllegalArgumentException.class, () -> ResultEncoding.decode(trailingBytes));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDFormContentStream;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The PDF documents the tests validate, from the test resources or generated.
+ */
+final class TestPdfs {
+
+    static final byte[] LOGO_IN_BARCODE_AREA = singlePageDocument((document, content) ->
+            content.drawImage(LosslessFactory.createFromImage(document, new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB)), 10, 500, 30, 30));
+    static final byte[] LINE_IN_BARCODE_AREA = singlePageDocument((document, content) -> {
+        content.moveTo(20, 400);
+        content.lineTo(20, 600);
+        content.stroke();
+    });
+    static final byte[] WHITE_BACKGROUND = singlePageDocument((document, content) -> {
+        content.setNonStrokingColor(Color.WHITE);
+        content.addRect(0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight());
+        content.fill();
+    });
+
+    private TestPdfs() {
+    }
+
+    static List<Path> corpus() throws IOException {
+        try (Stream<Path> pdfs = Files.list(pdfPath("/pdf"))) {
+            return pdfs.filter(pdf -> pdf.toString().endsWith(".pdf")).sorted().collect(toList());
+        }
+    }
+
+    static byte[] pdfBytes(String pdfResourceName) {
+        try {
+            return Files.readAllBytes(pdfPath(pdfResourceName));
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    static Path pdfPath(String pdfResourceName) {
+        return Paths.get(requireNonNull(TestPdfs.class.getResource(pdfResourceName), pdfResourceName).getFile().replace("%20", " "));
+    }
+
+    /**
+     * @return a document of 6 pages showing the same letterhead form, where the last 3 pages have the same content
+     */
+    static byte[] templatedDocument(boolean letterheadInBarcodeArea) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDFont helvetica = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            PDFormXObject letterhead = new PDFormXObject(document);
+            letterhead.setBBox(PDRectangle.A4);
+            letterhead.setResources(new PDResources());
+            try (PDFormContentStream content = new PDFormContentStream(letterhead)) {
+                content.beginText();
+                content.setFont(helvetica, 12);
+                content.newLineAtOffset(letterheadInBarcodeArea ? 10 : 100, letterheadInBarcodeArea ? 500 : 800);
+                content.showText("Letterhead");
+                content.endText();
+            }
+            for (int i = 1; i <= 6; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                if (i <= 3) {
+                    try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                        content.drawForm(letterhead);
+                        content.beginText();
+                        content.setFont(helvetica, 12);
+                        content.newLineAtOffset(100, 700);
+                        content.showText("Page " + i);
+                        content.endText();
+                    }
+                } else {
+                    PDPage third = document.getPage(2);
+                    page.getCOSObject().setItem(COSName.CONTENTS, third.getCOSObject().getItem(COSName.CONTENTS));
+                    page.setResources(third.getResources());
+                }
+            }
+            return bytes(document);
+        }
+    }
+
+    @FunctionalInterface
+    interface PageContent {
+        void write(PDDocument document, PDPageContentStream content) throws IOException;
+    }
+
+    static byte[] singlePageDocument(PageContent pageContent) {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                pageContent.write(document, content);
+            }
+            return bytes(document);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    static byte[] bytes(PDDocument document) throws IOException {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        document.save(pdf);
+        return pdf.toByteArray();
+    }
+}
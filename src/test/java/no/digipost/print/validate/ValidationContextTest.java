@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import no.digipost.print.validate.PdfValidationSettings.Budget;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static no.digipost.print.validate.PdfValidationError.VALIDATION_BUDGET_EXCEEDED;
+import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class ValidationContextTest {
+
+    private static final PdfValidator validatorWithMetrics = new PdfValidator().withMetrics(result -> {});
+    private static final PdfValidationSettings MARGIN_ONLY = new PdfValidationSettings(true, false, false, false);
+
+    // the first page of the document has 28 content stream operators, and each of the other 20 pages has 18
+    private static final byte[] TWENTY_ONE_PAGES = pdfBytes("/pdf/a4-21pages.pdf");
+
+    @Test
+    public void stopsAtPageExceedingContentStreamOperatorBudget() {
+        PdfValidationResult unlimited = validatorWithMetrics.validate(TWENTY_ONE_PAGES, MARGIN_ONLY);
+        assertThat(unlimited.metrics.contentStreamOperators, is(28L + 20 * 18));
+
+        PdfValidationResult threePages = validatorWithMetrics.validate(TWENTY_ONE_PAGES, withOperatorBudget(28 + 2 * 18));
+        assertThat(threePages.errors, contains(VALIDATION_BUDGET_EXCEEDED));
+        assertThat("stopped on the fourth page", threePages.metrics.pagesChecked, is(4L));
+
+        PdfValidationResult firstPage = validatorWithMetrics.validate(TWENTY_ONE_PAGES, withOperatorBudget(27));
+        assertThat(firstPage.errors, contains(VALIDATION_BUDGET_EXCEEDED));
+        assertThat(firstPage.metrics.pagesChecked, is(1L));
+
+        assertThat(validatorWithMetrics.validate(TWENTY_ONE_PAGES, withOperatorBudget(28 + 20 * 18)).errors, empty());
+    }
+
+    @Test
+    public void countsOperatorsOfAllPageRangesWhenCheckingPagesConcurrently() {
+        PdfValidator concurrentValidator = new PdfValidator(Runnable::run, 3).withMetrics(result -> {});
+        assertThat(concurrentValidator.validate(TWENTY_ONE_PAGES, withOperatorBudget(28 + 20 * 18)).errors, empty());
+        assertThat(concurrentValidator.validate(TWENTY_ONE_PAGES, withOperatorBudget(28 + 20 * 18 - 1)).errors, contains(VALIDATION_BUDGET_EXCEEDED));
+    }
+
+    @Test
+    public void rejectsDocumentWithMoreObjectsThanBudgetBeforeCheckingPages() {
+        PdfValidationResult result = validatorWithMetrics.validate(pdfBytes("/pdf/a4-full-page.pdf"), CHECK_ALL.withBudget(new Budget(Long.MAX_VALUE, Long.MAX_VALUE, 5)));
+        assertThat(result.errors, contains(VALIDATION_BUDGET_EXCEEDED));
+        assertThat(result.metrics.pagesChecked, is(0L));
+    }
+
+    @Test
+    public void stopsBeforeFirstPageWhenOutOfTime() {
+        PdfValidationResult result = validatorWithMetrics.validate(TWENTY_ONE_PAGES, MARGIN_ONLY.withBudget(new Budget(0, Long.MAX_VALUE, Long.MAX_VALUE)));
+        assertThat(result.errors, contains(VALIDATION_BUDGET_EXCEEDED));
+        assertThat(result.metrics.pagesChecked, is(0L));
+    }
+
+    @Test
+    public void doesNotRememberResultsOfValidationsExceedingBudget() {
+        ValidationResultCache resultCache = new ValidationResultCache(Duration.ofMinutes(1));
+        PdfValidator cachingValidator = new PdfValidator().withResultCache(resultCache);
+        assertThat(cachingValidator.validate(TWENTY_ONE_PAGES, withOperatorBudget(10)).errors, contains(VALIDATION_BUDGET_EXCEEDED));
+        assertThat(resultCache.size(), is(0));
+    }
+
+    private static PdfValidationSettings withOperatorBudget(long maxContentStreamOperators) {
+        return MARGIN_ONLY.withBudget(new Budget(Long.MAX_VALUE, maxContentStreamOperators, Long.MAX_VALUE));
+    }
+}
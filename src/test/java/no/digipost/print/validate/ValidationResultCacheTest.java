@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static no.digipost.print.validate.PdfValidationSettings.CHECK_ALL;
+import static no.digipost.print.validate.TestPdfs.pdfBytes;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ValidationResultCacheTest {
+
+    @Test
+    public void findsResultsOfIdenticalDocumentsInResultCacheUntilTheyExpire() {
+        AtomicLong nanoTime = new AtomicLong();
+        ValidationResultCache resultCache = new ValidationResultCache(2, Duration.ofMinutes(1), nanoTime::get);
+        List<PdfValidationResult> validated = new ArrayList<>();
+        PdfValidator cachingValidator = new PdfValidator().withMetrics(validated::add).withResultCache(resultCache);
+
+        byte[] pdf = pdfBytes("/pdf/a4-left-margin-14_5mm.pdf");
+        PdfValidationResult result = cachingValidator.validate(pdf, CHECK_ALL);
+        PdfValidationResult cached = cachingValidator.validate(pdf.clone(), CHECK_ALL);
+        assertThat(cached.errors, is(result.errors));
+        assertThat(cached.metrics, nullValue());
+        assertThat(cachingValidator.validate(ByteBuffer.wrap(pdf), CHECK_ALL).errors, is(result.errors));
+        assertThat(cachingValidator.validate(pdf, CHECK_ALL.withFailFast(true)).errors, is(result.errors));
+        assertThat(resultCache.hits(), is(2L));
+        assertThat(resultCache.misses(), is(2L));
+        assertThat(validated, hasSize(2));
+
+        nanoTime.addAndGet(Duration.ofMinutes(1).toNanos());
+        cachingValidator.validate(pdf, CHECK_ALL);
+        assertThat("expired result is validated again", validated, hasSize(3));
+        assertThat(resultCache.hitRate(), is(0.4));
+    }
+
+    @Test
+    public void keepsResultsOfSameDocumentWithOtherSettingsApart() {
+        ValidationResultCache resultCache = new ValidationResultCache(Duration.ofMinutes(1));
+        PdfValidator cachingValidator = new PdfValidator().withResultCache(resultCache);
+        byte[] pdf = pdfBytes("/pdf/uten-embeddede-fonter.pdf");
+        PdfValidationResult withFonts = cachingValidator.validate(pdf, CHECK_ALL);
+        PdfValidationResult withoutFonts = cachingValidator.validate(pdf, new PdfValidationSettings(true, false, true, true));
+        assertThat(withFonts.okForPrint, is(false));
+        assertThat(withoutFonts.okForPrint, is(true));
+        assertThat(resultCache.size(), is(2));
+        assertThat(resultCache.hits(), is(0L));
+    }
+
+    @Test
+    public void evictsOldestResultsBeyondMaxSize() {
+        AtomicLong nanoTime = new AtomicLong();
+        ValidationResultCache resultCache = new ValidationResultCache(2, Duration.ofMinutes(1), nanoTime::get);
+        List<PdfValidationResult> validated = new ArrayList<>();
+        PdfValidator cachingValidator = new PdfValidator().withMetrics(validated::add).withResultCache(resultCache);
+        for (String pdf : new String[] {"/pdf/a4-left-margin-14_5mm.pdf", "/pdf/a4-full-page.pdf", "/pdf/a4-landscape.pdf", "/pdf/a4-landscape.pdf", "/pdf/a4-left-margin-14_5mm.pdf"}) {
+            cachingValidator.validate(pdfBytes(pdf), CHECK_ALL);
+        }
+        assertThat(resultCache.size(), is(2));
+        assertThat("the first document is validated again after being evicted", validated, hasSize(4));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) Posten Bring AS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.digipost.print.validate;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Runs against the multi-release JAR, where the Java 11 version of {@link ValidationEvents} emits the events.
+ */
+public class ValidationEventsIT {
+
+    private static final String DOCUMENT_VALIDATION = "no.digipost.print.validate.DocumentValidation";
+    private static final String PAGE_CHECK = "no.digipost.print.validate.PageCheck";
+
+    @Test
+    public void recordsDocumentValidationsAndPageChecks(@TempDir Path recordingDirectory) throws Exception {
+        byte[] pdf = Files.readAllBytes(Paths.get(ValidationEventsIT.class.getResource("/pdf/21-pages-and-bogus-fonts.pdf").toURI()));
+        Path recorded = recordingDirectory.resolve("validation.jfr");
+        PdfValidationResult result;
+        try (Recording recording = new Recording()) {
+            recording.enable(DOCUMENT_VALIDATION).withThreshold(Duration.ZERO);
+            recording.enable(PAGE_CHECK).withThreshold(Duration.ZERO);
+            recording.start();
+            result = new PdfValidator().validate(pdf, new PdfValidationSettings(true, true, false, true));
+            recording.stop();
+            recording.dump(recorded);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recorded);
+
+        List<RecordedEvent> documents = events.stream().filter(event -> event.getEventType().getName().equals(DOCUMENT_VALIDATION)).collect(toList());
+        assertThat(documents, hasSize(1));
+        RecordedEvent document = documents.get(0);
+        assertThat(document.getLong("sizeInBytes"), is((long) pdf.length));
+        assertThat(document.getInt("pages"), is(21));
+        assertThat(document.getBoolean("okForPrint"), is(false));
+        assertThat(document.getString("errors").split(", "), is(result.errors.stream().map(Enum::name).toArray(String[]::new)));
+
+        List<RecordedEvent> fontChecks = events.stream()
+                .filter(event -> event.getEventType().getName().equals(PAGE_CHECK) && event.getString("check").equals(ValidationMetrics.Phase.FONTS.name()))
+                .collect(toList());
+        Set<Integer> checkedPages = fontChecks.stream().map(event -> event.getInt("pageIndex")).collect(toSet());
+        assertThat(checkedPages, hasSize(21));
+        assertThat(fontChecks.stream().map(event -> event.getBoolean("hasErrors")).collect(toList()), everyItem(is(true)));
+        assertThat(fontChecks.stream().map(event -> event.getLong("contentStreamBytes")).collect(toList()), everyItem(greaterThan(0L)));
+    }
+}